@@ -1,6 +1,7 @@
 package io.budgetapp;
 
 import com.bazaarvoice.dropwizard.assets.ConfiguredAssetsBundle;
+import com.codahale.metrics.MetricRegistry;
 import com.fasterxml.jackson.datatype.hibernate5.Hibernate5Module;
 import io.budgetapp.application.ConstraintViolationExceptionMapper;
 import io.budgetapp.application.DataConstraintExceptionMapper;
@@ -9,33 +10,56 @@ import io.budgetapp.application.SQLConstraintViolationExceptionMapper;
 import io.budgetapp.auth.DefaultAuthorizer;
 import io.budgetapp.auth.DefaultUnauthorizedHandler;
 import io.budgetapp.auth.TokenAuthenticator;
+import io.budgetapp.cli.BackfillDailyUsageCommand;
+import io.budgetapp.cli.ForkLiftCommand;
 import io.budgetapp.configuration.AppConfiguration;
 import io.budgetapp.crypto.PasswordEncoder;
 import io.budgetapp.dao.*;
+import io.budgetapp.database.MySqlConnector;
+import io.budgetapp.database.PostgresConnector;
+import io.budgetapp.database.ShadowReader;
+import io.budgetapp.database.ShadowWriter;
+import io.budgetapp.hibernate.cache.GuavaRegionFactory;
+import io.budgetapp.job.ConsistencyCheckJob;
+import io.budgetapp.job.JobLease;
+import io.budgetapp.job.LeasedJob;
 import io.budgetapp.job.RecurringJob;
+import io.budgetapp.job.RolloverJob;
 import io.budgetapp.managed.JobsManaged;
 import io.budgetapp.managed.MigrationManaged;
+import io.budgetapp.managed.ShadowReaderManaged;
+import io.budgetapp.managed.ShadowWriterManaged;
+import io.budgetapp.managed.SuggestionManaged;
 import io.budgetapp.model.*;
 import io.budgetapp.resource.*;
 import io.budgetapp.service.FinanceService;
+import io.budgetapp.service.ProvisioningPlan;
+import io.budgetapp.service.SuggestionService;
+import io.budgetapp.service.SummaryCache;
 import io.dropwizard.Application;
 import io.dropwizard.auth.AuthDynamicFeature;
 import io.dropwizard.auth.AuthValueFactoryProvider;
+import io.dropwizard.auth.CachingAuthenticator;
 import io.dropwizard.auth.oauth.OAuthCredentialAuthFilter;
 import io.dropwizard.configuration.EnvironmentVariableSubstitutor;
 import io.dropwizard.configuration.SubstitutingSourceProvider;
 import io.dropwizard.db.DataSourceFactory;
+import io.dropwizard.db.ManagedDataSource;
 import io.dropwizard.hibernate.HibernateBundle;
 import io.dropwizard.hibernate.UnitOfWorkAwareProxyFactory;
 import io.dropwizard.migrations.MigrationsBundle;
 import io.dropwizard.setup.Bootstrap;
 import io.dropwizard.setup.Environment;
 import org.glassfish.jersey.server.filter.RolesAllowedDynamicFeature;
+import org.hibernate.cache.spi.RegionFactory;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
 import org.tuckey.web.filters.urlrewrite.UrlRewriteFilter;
 
 import javax.servlet.DispatcherType;
 import javax.servlet.FilterRegistration;
 import java.util.EnumSet;
+import java.util.concurrent.ExecutorService;
 
 /**
  *
@@ -61,6 +85,23 @@ public class BudgetApplication extends Application<AppConfiguration> {
         public DataSourceFactory getDataSourceFactory(AppConfiguration configuration) {
             return configuration.getDataSourceFactory();
         }
+
+        @Override
+        protected void configure(org.hibernate.cfg.Configuration configuration) {
+            // second level cache for the read mostly entities and the category list, database properties take precedence
+            setDefault(configuration, AvailableSettings.USE_SECOND_LEVEL_CACHE, "true");
+            setDefault(configuration, AvailableSettings.USE_QUERY_CACHE, "true");
+            setDefault(configuration, AvailableSettings.CACHE_REGION_FACTORY, GuavaRegionFactory.class.getName());
+            // ids come from pooled sequences, so inserts and updates can go out in JDBC batches
+            setDefault(configuration, AvailableSettings.STATEMENT_BATCH_SIZE, "50");
+            setDefault(configuration, AvailableSettings.BATCH_VERSIONED_DATA, "true");
+        }
+
+        private void setDefault(org.hibernate.cfg.Configuration configuration, String key, String value) {
+            if(configuration.getProperty(key) == null) {
+                configuration.setProperty(key, value);
+            }
+        }
     };
 
     @Override
@@ -88,36 +129,85 @@ public class BudgetApplication extends Application<AppConfiguration> {
         bootstrap.addBundle(migrationBundle);
         bootstrap.addBundle(hibernate);
         bootstrap.addBundle(new ConfiguredAssetsBundle("/app", "/app", "index.html"));
+        bootstrap.addCommand(new ForkLiftCommand());
+        bootstrap.addCommand(new BackfillDailyUsageCommand());
     }
 
     @Override
     public void run(AppConfiguration configuration, Environment environment) {
 
         // password encoder
-        final PasswordEncoder passwordEncoder = new PasswordEncoder();
+        final PasswordEncoder passwordEncoder = new PasswordEncoder(configuration.getPassword().getSecret(), configuration.getPassword().getIterations());
+        final ExecutorService passwordHashExecutor = environment.lifecycle().executorService("password-hash-%d")
+                .minThreads(configuration.getPassword().getHashThreads())
+                .maxThreads(configuration.getPassword().getHashThreads())
+                .build();
+
+        // shadow write to mysql
+        MySqlConnector.getInstance().setUseMySql(configuration.getShadowWrite().isEnabled());
+        if(configuration.getShadowWrite().isEnabled()) {
+            final ManagedDataSource mySqlDataSource = configuration.getShadowDataSourceFactory().build(environment.metrics(), "mysql");
+            final ManagedDataSource postgresDataSource = configuration.getDataSourceFactory().build(environment.metrics(), "postgres");
+            environment.lifecycle().manage(mySqlDataSource);
+            environment.lifecycle().manage(postgresDataSource);
+            MySqlConnector.getInstance().setDataSource(mySqlDataSource, environment.metrics(), "mysql");
+            PostgresConnector.getInstance().setDataSource(postgresDataSource, environment.metrics(), "postgres");
+        }
+        final ShadowWriter shadowWriter = new ShadowWriter(hibernate.getSessionFactory(), configuration.getShadowWrite(), environment.metrics());
+        final ShadowReader shadowReader = new ShadowReader(configuration.getShadowRead(), environment.metrics());
+
+        // second level cache metrics
+        RegionFactory regionFactory = ((SessionFactoryImplementor) hibernate.getSessionFactory()).getCache().getRegionFactory();
+        if(regionFactory instanceof GuavaRegionFactory) {
+            ((GuavaRegionFactory) regionFactory).registerMetrics(environment.metrics());
+        }
 
         // DAO
-        final CategoryDAO categoryDAO = new CategoryDAO(hibernate.getSessionFactory(), configuration);
-        final BudgetDAO budgetDAO = new BudgetDAO(hibernate.getSessionFactory(), configuration);
-        final BudgetTypeDAO budgetTypeDAO = new BudgetTypeDAO(hibernate.getSessionFactory());
-        final UserDAO userDAO = new UserDAO(hibernate.getSessionFactory());
-        final TransactionDAO transactionDAO = new TransactionDAO(hibernate.getSessionFactory());
-        final RecurringDAO recurringDAO = new RecurringDAO(hibernate.getSessionFactory());
+        final CategoryDAO categoryDAO = new CategoryDAO(hibernate.getSessionFactory(), shadowWriter, shadowReader);
+        final BudgetDAO budgetDAO = new BudgetDAO(hibernate.getSessionFactory(), shadowWriter, shadowReader);
+        final BudgetTypeDAO budgetTypeDAO = new BudgetTypeDAO(hibernate.getSessionFactory(), shadowWriter);
+        final UserDAO userDAO = new UserDAO(hibernate.getSessionFactory(), shadowWriter);
+        final TransactionDAO transactionDAO = new TransactionDAO(hibernate.getSessionFactory(), shadowWriter, shadowReader);
+        final RecurringDAO recurringDAO = new RecurringDAO(hibernate.getSessionFactory(), shadowWriter);
         final AuthTokenDAO authTokenDAO = new AuthTokenDAO(hibernate.getSessionFactory());
+        final DailyUsageDAO dailyUsageDAO = new DailyUsageDAO(hibernate.getSessionFactory());
 
         // service
-        final FinanceService financeService = new FinanceService(userDAO, budgetDAO, budgetTypeDAO, categoryDAO, transactionDAO, recurringDAO, authTokenDAO, passwordEncoder);
+        final SummaryCache summaryCache = new SummaryCache(hibernate.getSessionFactory(), configuration.getSummaryCachePolicy(), environment.metrics());
+        final SuggestionService suggestionService = new UnitOfWorkAwareProxyFactory(hibernate).create(SuggestionService.class,
+                new Class<?>[] {BudgetDAO.class, CategoryDAO.class},
+                new Object[] {budgetDAO, categoryDAO});
+        final ProvisioningPlan provisioningPlan = new ProvisioningPlan(configuration.getCategories(), configuration.getBudgets());
+        final FinanceService financeService = new FinanceService(userDAO, budgetDAO, budgetTypeDAO, categoryDAO, transactionDAO, recurringDAO, authTokenDAO, passwordEncoder, summaryCache, dailyUsageDAO, suggestionService, provisioningPlan, passwordHashExecutor);
 
         // jobs
-        final RecurringJob recurringJob = new UnitOfWorkAwareProxyFactory(hibernate).create(RecurringJob.class, FinanceService.class, financeService);
+        final JobLease recurringLease = new JobLease(hibernate.getSessionFactory(), "recurring", configuration.getRecurringJob().getLeaseDuration().toMilliseconds());
+        final RecurringJob recurringJob = new UnitOfWorkAwareProxyFactory(hibernate).create(RecurringJob.class,
+                new Class<?>[] {FinanceService.class, int.class, JobLease.class, MetricRegistry.class},
+                new Object[] {financeService, configuration.getRecurringJob().getBatchSize(), recurringLease, environment.metrics()});
+        final LeasedJob leasedRecurringJob = new LeasedJob("recurring", recurringJob, recurringLease, environment.metrics());
+        final RolloverJob rolloverJob = new UnitOfWorkAwareProxyFactory(hibernate).create(RolloverJob.class,
+                new Class<?>[] {FinanceService.class, int.class, long.class, MetricRegistry.class},
+                new Object[] {financeService, configuration.getRolloverJob().getBatchSize(), configuration.getRolloverJob().getLeadTime().toMilliseconds(), environment.metrics()});
+        final LeasedJob leasedRolloverJob = new LeasedJob("rollover", rolloverJob,
+                new JobLease(hibernate.getSessionFactory(), "rollover", configuration.getRolloverJob().getLeaseDuration().toMilliseconds()),
+                environment.metrics());
+        final JobLease consistencyCheckLease = new JobLease(hibernate.getSessionFactory(), "consistency-check", configuration.getConsistencyCheck().getLeaseDuration().toMilliseconds());
+        final LeasedJob leasedConsistencyCheckJob = new LeasedJob("consistency-check", new ConsistencyCheckJob(configuration.getConsistencyCheck(), consistencyCheckLease),
+                consistencyCheckLease, environment.metrics());
+
+        // auth cache, a hit skips the unit of work on the token authenticator
+        TokenAuthenticator tokenAuthenticator = new UnitOfWorkAwareProxyFactory(hibernate).create(TokenAuthenticator.class, FinanceService.class, financeService);
+        final CachingAuthenticator<String, User> cachingAuthenticator =
+                new CachingAuthenticator<>(environment.metrics(), tokenAuthenticator, configuration.getAuthenticationCachePolicy());
 
         // resource
-        environment.jersey().register(new UserResource(financeService));
+        environment.jersey().register(new UserResource(financeService, cachingAuthenticator));
         environment.jersey().register(new CategoryResource(financeService));
         environment.jersey().register(new BudgetResource(financeService));
         environment.jersey().register(new TransactionResource(financeService));
         environment.jersey().register(new RecurringResource(financeService));
-        environment.jersey().register(new ReportResource(financeService));
+        environment.jersey().register(new ReportResource(financeService, environment.getObjectMapper()));
 
         // health check
         environment.jersey().register(new HealthCheckResource(environment.healthChecks()));
@@ -125,15 +215,17 @@ public class BudgetApplication extends Application<AppConfiguration> {
 
         // managed
         environment.lifecycle().manage(new MigrationManaged(configuration));
-        environment.lifecycle().manage(new JobsManaged(recurringJob));
+        environment.lifecycle().manage(new JobsManaged(leasedRecurringJob, configuration.getRecurringJob().getInterval(), leasedRolloverJob, configuration.getRolloverJob().getInterval(), leasedConsistencyCheckJob, configuration.getConsistencyCheck().getInterval()));
+        environment.lifecycle().manage(new ShadowWriterManaged(shadowWriter));
+        environment.lifecycle().manage(new ShadowReaderManaged(shadowReader));
+        environment.lifecycle().manage(new SuggestionManaged(suggestionService));
 
         // auth
-        TokenAuthenticator tokenAuthenticator = new UnitOfWorkAwareProxyFactory(hibernate).create(TokenAuthenticator.class, FinanceService.class, financeService);
         final OAuthCredentialAuthFilter<User> authFilter =
                 new OAuthCredentialAuthFilter.Builder<User>()
-                        .setAuthenticator(tokenAuthenticator)
+                        .setAuthenticator(cachingAuthenticator)
                         .setPrefix("Bearer")
-                        .setAuthorizer(new DefaultAuthorizer())
+                        .setAuthorizer(new DefaultAuthorizer(configuration.getAdmins()))
                         .setUnauthorizedHandler(new DefaultUnauthorizedHandler())
                         .buildAuthFilter();
         environment.jersey().register(RolesAllowedDynamicFeature.class);
@@ -3,12 +3,29 @@ package io.budgetapp.auth;
 import io.budgetapp.model.User;
 import io.dropwizard.auth.Authorizer;
 
+import java.util.Collection;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+
 /**
- *
+ * Every signed in user has all roles but {@link #ADMIN}, which is given by username in the configuration
  */
 public class DefaultAuthorizer implements Authorizer<User> {
+
+    public static final String ADMIN = "ADMIN";
+
+    private final Set<String> admins;
+
+    public DefaultAuthorizer(Collection<String> admins) {
+        this.admins = admins.stream().map(admin -> admin.toLowerCase(Locale.ROOT)).collect(Collectors.toSet());
+    }
+
     @Override
     public boolean authorize(User user, String role) {
+        if(ADMIN.equals(role)) {
+            return admins.contains(user.getUsername().toLowerCase(Locale.ROOT));
+        }
         return true;
     }
-}
\ No newline at end of file
+}
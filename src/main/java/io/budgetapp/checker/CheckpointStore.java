@@ -0,0 +1,51 @@
+package io.budgetapp.checker;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+
+/**
+ * Persists the per-table high-water mark of the consistency checker in the
+ * <code>consistency_checkpoints</code> table, so restarts resume where the last pass stopped
+ */
+public class CheckpointStore {
+
+    private final Connection connection;
+
+    public CheckpointStore(Connection connection) {
+        this.connection = connection;
+    }
+
+    /**
+     * @param table checked table
+     * @return last id compared, 0 when the table was never checked
+     */
+    public long load(String table) throws SQLException {
+        try(PreparedStatement stmt = connection.prepareStatement("SELECT last_id FROM consistency_checkpoints WHERE table_name = ?")) {
+            stmt.setString(1, table);
+            try(ResultSet result = stmt.executeQuery()) {
+                return result.next() ? result.getLong(1) : 0;
+            }
+        }
+    }
+
+    public void save(String table, long lastId) throws SQLException {
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        try(PreparedStatement update = connection.prepareStatement("UPDATE consistency_checkpoints SET last_id = ?, updated_at = ? WHERE table_name = ?")) {
+            update.setLong(1, lastId);
+            update.setTimestamp(2, now);
+            update.setString(3, table);
+            if(update.executeUpdate() > 0) {
+                return;
+            }
+        }
+        try(PreparedStatement insert = connection.prepareStatement("INSERT INTO consistency_checkpoints (table_name, last_id, updated_at) VALUES (?, ?, ?)")) {
+            insert.setString(1, table);
+            insert.setLong(2, lastId);
+            insert.setTimestamp(3, now);
+            insert.executeUpdate();
+        }
+    }
+}
@@ -1,13 +1,23 @@
 package io.budgetapp.checker;
 
+import java.math.BigDecimal;
 import java.sql.Connection;
 import java.sql.Date;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
-import java.sql.SQLIntegrityConstraintViolationException;
-import java.sql.Statement;
 import java.sql.Timestamp;
 import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.stream.Collectors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -17,17 +27,43 @@ public class ConsistencyChecker {
 	
 	private Connection conPostgres;
 	private Connection conMySQL;
+	private RepairBatch repairs;
+	private long shadowLagMillis;
 	
 	
 	public ConsistencyChecker(Connection conPostgres, Connection conMySQL){
+		this(conPostgres, conMySQL, 500, false);
+	}
+
+	/**
+	 * @param repairBatchSize number of repairs written to MySQL per transaction
+	 * @param dryRun only report the repairs, MySQL is left untouched
+	 */
+	public ConsistencyChecker(Connection conPostgres, Connection conMySQL, int repairBatchSize, boolean dryRun){
+		this(conPostgres, conMySQL, repairBatchSize, dryRun, 0);
+	}
+
+	/**
+	 * @param shadowLagMillis rows created less than this ago are not checked yet, 0 checks every row
+	 */
+	public ConsistencyChecker(Connection conPostgres, Connection conMySQL, int repairBatchSize, boolean dryRun, long shadowLagMillis){
 		this.conPostgres = conPostgres;
 		this.conMySQL = conMySQL;
+		this.repairs = new RepairBatch(conMySQL, repairBatchSize, dryRun);
+		this.shadowLagMillis = shadowLagMillis;
 		inconsistencies = 0;
 	}
 	
 	public long getNumInconsistencies(){
 		return inconsistencies;
 	}
+
+	/**
+	 * @return number of repairs written to MySQL, or reported in dry-run mode
+	 */
+	public long getNumRepairs(){
+		return repairs.getRepaired();
+	}
 	
 	public void close() throws SQLException {
 		conMySQL.close();
@@ -36,23 +72,190 @@ public class ConsistencyChecker {
 	}
 	
 	private static final Logger LOGGER = LoggerFactory.getLogger(ConsistencyChecker.class);
+
+	/**
+	 * Selects a window of rows in id order, so both stores can be merged on id
+	 */
+	private PreparedStatement selectAfter(Connection con, String table, long afterId, long beforeId, int limit) throws SQLException {
+		PreparedStatement stmt = con.prepareStatement("SELECT * FROM " + table + " WHERE id > ? AND id < ? ORDER BY id LIMIT ?");
+		stmt.setLong(1, afterId);
+		stmt.setLong(2, beforeId);
+		stmt.setInt(3, limit);
+		return stmt;
+	}
+
+	/**
+	 * The window ends before the first Postgres row created within the shadow lag, so the watermark never passes
+	 * a row the shadow writer may not have written yet
+	 * @return id of that row, {@link Long#MAX_VALUE} when the whole window is old enough
+	 */
+	private long youngestId(String table, long afterId, int limit) throws SQLException {
+		if(shadowLagMillis <= 0) {
+			return Long.MAX_VALUE;
+		}
+		try(PreparedStatement stmt = conPostgres.prepareStatement("SELECT MIN(w.id) FROM (SELECT id, created_at FROM " + table
+				+ " WHERE id > ? ORDER BY id LIMIT ?) w WHERE w.created_at >= ?")) {
+			stmt.setLong(1, afterId);
+			stmt.setInt(2, limit);
+			stmt.setTimestamp(3, new java.sql.Timestamp(System.currentTimeMillis() - shadowLagMillis));
+			try(ResultSet result = stmt.executeQuery()) {
+				result.next();
+				long id = result.getLong(1);
+				return result.wasNull() ? Long.MAX_VALUE : id;
+			}
+		}
+	}
+
+	/**
+	 * Walks a window of both stores in id order and compares the rows present in both. Rows found in
+	 * only one store are passed to {@link #repair}, which reads them again from Postgres, so a row
+	 * committed while the window was read is copied instead of deleted.
+	 * @return id of the last row compared, <code>afterId</code> when there was nothing to compare
+	 */
+	private long mergeJoin(String table, long afterId, int limit, RowComparison comparison) throws SQLException {
+		long lastId = afterId;
+		Set<Long> unmatched = new HashSet<>();
+		long beforeId = youngestId(table, afterId, limit);
+		try(PreparedStatement stmtPostgres = selectAfter(conPostgres, table, afterId, beforeId, limit);
+			PreparedStatement stmtMySQL = selectAfter(conMySQL, table, afterId, beforeId, limit);
+			ResultSet resultPostgres = stmtPostgres.executeQuery();
+			ResultSet resultMySQL = stmtMySQL.executeQuery()) {
+
+			boolean hasPostgres = resultPostgres.next();
+			boolean hasMySQL = resultMySQL.next();
+			int rowsPostgres = hasPostgres ? 1 : 0;
+			int rowsMySQL = hasMySQL ? 1 : 0;
+			while(hasPostgres || hasMySQL) {
+				// a full window that ran out says nothing about the ids beyond it, they are left for the next window
+				if((!hasPostgres && rowsPostgres == limit) || (!hasMySQL && rowsMySQL == limit)) {
+					break;
+				}
+				long id_Postgres = hasPostgres ? resultPostgres.getLong("id") : Long.MAX_VALUE;
+				long id_MySQL = hasMySQL ? resultMySQL.getLong("id") : Long.MAX_VALUE;
+				if(id_Postgres == id_MySQL) {
+					comparison.compare(resultPostgres, resultMySQL, id_Postgres);
+					lastId = id_Postgres;
+				} else if(id_Postgres < id_MySQL) {
+					LOGGER.debug(table + " row " + id_Postgres + " missing in MySQL");
+					unmatched.add(id_Postgres);
+					lastId = id_Postgres;
+				} else {
+					LOGGER.debug(table + " row " + id_MySQL + " missing in Postgres");
+					unmatched.add(id_MySQL);
+					lastId = id_MySQL;
+				}
+				if(id_Postgres <= id_MySQL) {
+					hasPostgres = resultPostgres.next();
+					rowsPostgres += hasPostgres ? 1 : 0;
+				}
+				if(id_MySQL <= id_Postgres) {
+					hasMySQL = resultMySQL.next();
+					rowsMySQL += hasMySQL ? 1 : 0;
+				}
+			}
+		}
+		repairs.flush();
+		if(!unmatched.isEmpty()) {
+			inconsistencies += unmatched.size();
+			repair(table, unmatched);
+		}
+		return lastId;
+	}
+
+	/**
+	 * Timestamps are compared to the second, MySQL does not keep fractions
+	 */
+	private boolean sameSecond(java.util.Date postgres, java.util.Date mySQL){
+		if(postgres == null || mySQL == null){
+			return postgres == mySQL;
+		}
+		return postgres.toString().split("\\.")[0].equals(mySQL.toString().split("\\.")[0]);
+	}
+
+	private boolean sameAmount(BigDecimal postgres, BigDecimal mySQL){
+		if(postgres == null || mySQL == null){
+			return postgres == mySQL;
+		}
+		return postgres.compareTo(mySQL) == 0;
+	}
+
+	/**
+	 * @return the id column value, <code>null</code> for a SQL NULL
+	 */
+	private Long getId(ResultSet result, String column) throws SQLException {
+		long id = result.getLong(column);
+		return result.wasNull() ? null : id;
+	}
+
+	/**
+	 * Compares a whole table through per-range digests computed by each store instead of row by row
+	 * @param table table to compare
+	 * @param maxId only rows with an id up to and including this one are compared
+	 * @param fanout number of sub ranges a differing range is split into
+	 * @param leafSize ranges with at most this many rows are compared row by row
+	 * @return ids of the rows that differ between the two stores
+	 */
+	public SortedSet<Long> checkByHashRange(String table, long maxId, int fanout, int leafSize) throws SQLException {
+		LOGGER.info("********Hash Range Checking " + table + "********");
+		SortedSet<Long> divergent = new HashRangeComparator(conPostgres, conMySQL, fanout, leafSize).compare(table, maxId);
+		inconsistencies += divergent.size();
+		return divergent;
+	}
+
+	/**
+	 * Copies the given rows from Postgres over MySQL, rows that no longer exist in Postgres are deleted
+	 * @param table table to repair
+	 * @param ids ids to repair, usually from {@link #checkByHashRange}
+	 */
+	public void repair(String table, Set<Long> ids) throws SQLException {
+		List<Long> remaining = new ArrayList<>(ids);
+		for (int start = 0; start < remaining.size(); start += 500) {
+			List<Long> chunk = remaining.subList(start, Math.min(start + 500, remaining.size()));
+			Set<Long> missing = new HashSet<>(chunk);
+			String in = String.join(", ", Collections.nCopies(chunk.size(), "?"));
+			try(PreparedStatement stmt = conPostgres.prepareStatement("SELECT * FROM " + table + " WHERE id IN (" + in + ")")) {
+				for (int i = 0; i < chunk.size(); i++) {
+					stmt.setLong(i + 1, chunk.get(i));
+				}
+				try(ResultSet result = stmt.executeQuery()) {
+					ResultSetMetaData metaData = result.getMetaData();
+					while(result.next()) {
+						Map<String, Object> row = new LinkedHashMap<>();
+						for (int i = 1; i <= metaData.getColumnCount(); i++) {
+							row.put(metaData.getColumnName(i), result.getObject(i));
+						}
+						missing.remove(result.getLong("id"));
+						repairs.upsert(table, row);
+					}
+				}
+			}
+			for (Long id : missing) {
+				repairs.delete(table, id);
+			}
+		}
+		repairs.flush();
+		LOGGER.debug("Repaired " + table + " ids " + ids.stream().map(String::valueOf).collect(Collectors.joining(", ")));
+	}
+
 	/**
 	 * Compares the user tables
 	 */
 	public void checkUsers(){
+		checkUsers(0, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Compares the users rows with an id above the given watermark
+	 * @param afterId watermark, only rows with a greater id are compared
+	 * @param limit maximum number of rows to compare
+	 * @return id of the last row compared, <code>afterId</code> when there was nothing to compare
+	 */
+	public long checkUsers(long afterId, int limit){
 		LOGGER.info("***************Checking Users*****************");
 		try {
-
-			Statement stmtPostgres = conPostgres.createStatement( );
-			ResultSet resultPostgres = stmtPostgres.executeQuery("SELECT * FROM users");
-
-			Statement stmtMySQL = conMySQL.createStatement( );
-			ResultSet resultMySQL = stmtMySQL.executeQuery("SELECT * FROM users");
-
-			while(resultPostgres.next() && resultMySQL.next()) {
+			return mergeJoin("users", afterId, limit, (resultPostgres, resultMySQL, id) -> {
 
 				// Getting values from the old database (Postgres)
-				int id_Postgres = resultPostgres.getInt("id");
 				String username_Postgres= resultPostgres.getString("username");
 				String password_Postgres = resultPostgres.getString("password");
 				String name_Postgres = resultPostgres.getString("name");
@@ -60,477 +263,291 @@ public class ConsistencyChecker {
 				String currency_Postgres = resultPostgres.getString("currency");
 
 				// Getting values from the new database (MySQL)
-				int id_MySQL = resultMySQL.getInt("id");
 				String username_MySQL= resultMySQL.getString("username");
 				String password_MySQL = resultMySQL.getString("password");
 				String name_MySQL = resultMySQL.getString("name");
 				Timestamp timeStamp_MySQL = resultMySQL.getTimestamp("created_at");
 				String currency_MySQL = resultMySQL.getString("currency");
 
-
-				// Copying data into new storage (MySQL)
-				String query = "";
-				boolean hasTimeStampInconsistency = false;
-
 				//Comparing Values
-				if(!username_Postgres.equals(username_MySQL)){
+				if(!Objects.equals(username_Postgres, username_MySQL)){
 					LOGGER.debug("username inconsistency: expected '"+username_Postgres+"' but received '"+username_MySQL+"'");
-					query+= " UPDATE users SET username = '"+username_Postgres+"' WHERE id = "+id_MySQL+";";
+					repairs.update("users", "username", username_Postgres, id);
 					inconsistencies++;
 				}
-				if(!password_Postgres.equals(password_MySQL)){
-					LOGGER.debug("password inconsistency: expected '"+password_Postgres+"' but received '"+password_MySQL+"'");
-					query+= " UPDATE users SET password = '"+password_Postgres+"' WHERE id = "+id_MySQL+";";
+				if(!Objects.equals(password_Postgres, password_MySQL)){
+					LOGGER.debug("password inconsistency at index " + id);
+					repairs.update("users", "password", password_Postgres, id);
 					inconsistencies++;
 				}
-				if(!name_Postgres.equals(name_MySQL)){
+				if(!Objects.equals(name_Postgres, name_MySQL)){
 					LOGGER.debug("name inconsistency: expected '"+name_Postgres+"' but received '"+name_MySQL+"'");
-					query+= " UPDATE users SET name = '"+name_Postgres+"' WHERE id = "+id_MySQL+";";
+					repairs.update("users", "name", name_Postgres, id);
 					inconsistencies++;
 				}
-
-
-				String timeStampPostgres = timeStamp_Postgres.toString().split("\\.")[0];
-				String timeStampMySQL = timeStamp_MySQL.toString().split("\\.")[0];
-
-				if(!timeStampPostgres.equals(timeStampMySQL)){
-					LOGGER.debug("created_at inconsistency: expected "+timeStamp_Postgres.getTime()+" but received "+timeStamp_MySQL.getTime() + " at index " + id_MySQL);
-					query+= " UPDATE users SET created_at = ? WHERE id = "+id_MySQL+";";
-					hasTimeStampInconsistency = true;
+				if(!sameSecond(timeStamp_Postgres, timeStamp_MySQL)){
+					LOGGER.debug("created_at inconsistency: expected "+timeStamp_Postgres+" but received "+timeStamp_MySQL + " at index " + id);
+					repairs.update("users", "created_at", timeStamp_Postgres, id);
 					inconsistencies++;
 				}
-
-				if (currency_Postgres == null && currency_MySQL == null) {
-					break;
-				}
-				else if(!currency_Postgres.equals(currency_MySQL)){
+				if(!Objects.equals(currency_Postgres, currency_MySQL)){
 					LOGGER.debug("currency inconsistency: expected '"+currency_Postgres+"' but received '"+currency_MySQL+"'");
-					query+= " UPDATE users SET currency = '"+currency_Postgres+"' WHERE id = "+id_MySQL+";";
-					inconsistencies++;
-				}
-
-				PreparedStatement preparedStmt = conMySQL.prepareStatement(query);
-
-				//Adding in any unspecified variables to the statement if they require updating
-				if(hasTimeStampInconsistency){
-					preparedStmt.setTimestamp(1, timeStamp_Postgres);
+					repairs.update("users", "currency", currency_Postgres, id);
 					inconsistencies++;
 				}
-
-				try {
-					if(query != "")
-						preparedStmt.execute();
-				}
-				catch (SQLIntegrityConstraintViolationException  e) {
-					LOGGER.error("users table checking failed");
-				}
-				hasTimeStampInconsistency = false;
-			}
+			});
 		} catch (SQLException e) {
-			e.printStackTrace();
+			LOGGER.error("users table checking failed", e);
+			return afterId;
 		}
 	}
 	/**
 	 * Compares the budget_types data
 	 */
 	public void checkBudgetTypes(){
+		checkBudgetTypes(0, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Compares the budget_types rows with an id above the given watermark
+	 * @param afterId watermark, only rows with a greater id are compared
+	 * @param limit maximum number of rows to compare
+	 * @return id of the last row compared, <code>afterId</code> when there was nothing to compare
+	 */
+	public long checkBudgetTypes(long afterId, int limit){
 		
 		LOGGER.info("************Checking Budget Types*************");
 		try {
-
-			Statement stmtPostgres = conPostgres.createStatement( );
-			ResultSet resultPostgres = stmtPostgres.executeQuery("SELECT * FROM budget_types");
-
-			Statement stmtMySQL = conMySQL.createStatement( );
-			ResultSet resultMySQL = stmtMySQL.executeQuery("SELECT * FROM budget_types");
-
-			while(resultPostgres.next() && resultMySQL.next()) {
+			return mergeJoin("budget_types", afterId, limit, (resultPostgres, resultMySQL, id) -> {
 
 				// Getting values from the old database (Postgres)
-				int id_Postgres = resultPostgres.getInt("id");
 				Timestamp timeStamp_Postgres = resultPostgres.getTimestamp("created_at");
 
 				// Getting values from the new database (MySQL)
-				int id_MySQL = resultMySQL.getInt("id");
 				Timestamp timeStamp_MySQL = resultMySQL.getTimestamp("created_at");
 
-
-				String query = "";
-				boolean hasTimeStampInconsistency = false;
-
-				// Extract date and time only 
-				String timeStampPostgres = timeStamp_Postgres.toString().split("\\.")[0];
-				String timeStampMySQL = timeStamp_MySQL.toString().split("\\.")[0];
-
-				if(!timeStampPostgres.equals(timeStampMySQL)){
-					LOGGER.debug("created_at inconsistency: expected "+timeStamp_Postgres.getTime()+" but received "+timeStamp_MySQL.getTime() + " at index " + id_MySQL);
-					query+= " UPDATE budget_types SET created_at = ? WHERE id = "+id_MySQL+";";
-					hasTimeStampInconsistency = true;
+				if(!sameSecond(timeStamp_Postgres, timeStamp_MySQL)){
+					LOGGER.debug("created_at inconsistency: expected "+timeStamp_Postgres+" but received "+timeStamp_MySQL + " at index " + id);
+					repairs.update("budget_types", "created_at", timeStamp_Postgres, id);
 					inconsistencies++;
 				}
-
-				PreparedStatement preparedStmt = conMySQL.prepareStatement(query);
-				//Adding in any unspecified variables to the statement if they require updating
-				if(hasTimeStampInconsistency){
-					preparedStmt.setTimestamp(1, timeStamp_Postgres);
-					try {
-						if(query != "")
-							preparedStmt.execute();
-					}
-					catch (SQLIntegrityConstraintViolationException  e) {
-						LOGGER.error("budget_types table checking failed");
-						e.printStackTrace();
-					}
-					hasTimeStampInconsistency = false;
-				}
-
-			}
+			});
 		} catch (SQLException e) {
-			e.printStackTrace();
+			LOGGER.error("budget_types table checking failed", e);
+			return afterId;
 		}
 	}
 	/**
 	 * Compares the contents of the budgets table
 	 */
 	public void checkBudgets(){
+		checkBudgets(0, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Compares the budgets rows with an id above the given watermark
+	 * @param afterId watermark, only rows with a greater id are compared
+	 * @param limit maximum number of rows to compare
+	 * @return id of the last row compared, <code>afterId</code> when there was nothing to compare
+	 */
+	public long checkBudgets(long afterId, int limit){
 		LOGGER.info("**************Checking Budgets****************");
 		try {
-
-			Statement stmtPostgres = conPostgres.createStatement( );
-			ResultSet resultPostgres = stmtPostgres.executeQuery("SELECT * FROM budgets");
-
-			Statement stmtMySQL = conMySQL.createStatement( );
-			ResultSet resultMySQL = stmtMySQL.executeQuery("SELECT * FROM budgets");
-
-			while(resultPostgres.next() && resultMySQL.next()) {
+			return mergeJoin("budgets", afterId, limit, (resultPostgres, resultMySQL, id) -> {
 
 				// Getting values from the old database (Postgres)
-				int id_Postgres = resultPostgres.getInt("id");
 				String name_Postgres = resultPostgres.getString("name");
-				double projected_Postgres = resultPostgres.getDouble("projected");
-				double actual_Postgres = resultPostgres.getDouble("actual");
+				BigDecimal projected_Postgres = resultPostgres.getBigDecimal("projected");
+				BigDecimal actual_Postgres = resultPostgres.getBigDecimal("actual");
 				Date periodOn_Postgres= resultPostgres.getDate("period_on");
 				Timestamp timeStamp_Postgres = resultPostgres.getTimestamp("created_at");
-				int userId_Postgres = resultPostgres.getInt("user_id");
-				int categoryId_Postgres = resultPostgres.getInt("category_id");
-				int typeId_Postgres = resultPostgres.getInt("type_id");
+				long userId_Postgres = resultPostgres.getLong("user_id");
+				long categoryId_Postgres = resultPostgres.getLong("category_id");
+				long typeId_Postgres = resultPostgres.getLong("type_id");
 
 				// Getting values from the new database (MySQL)
-				int id_MySQL = resultMySQL.getInt("id");
 				String name_MySQL = resultMySQL.getString("name");
-				double projected_MySQL = resultMySQL.getDouble("projected");
-				double actual_MySQL = resultMySQL.getDouble("actual");
+				BigDecimal projected_MySQL = resultMySQL.getBigDecimal("projected");
+				BigDecimal actual_MySQL = resultMySQL.getBigDecimal("actual");
 				Date periodOn_MySQL= resultMySQL.getDate("period_on");
 				Timestamp timeStamp_MySQL = resultMySQL.getTimestamp("created_at");
-				int userId_MySQL = resultMySQL.getInt("user_id");
-				int categoryId_MySQL = resultMySQL.getInt("category_id");
-				int typeId_MySQL = resultMySQL.getInt("type_id");
-
-				//Disable foreign key checks
-				Statement disableFKChecks = conMySQL.createStatement();
-				disableFKChecks.executeQuery("SET FOREIGN_KEY_CHECKS=0");
-
-
-				// Copying data into new storage (MySQL)
-				String query = "";
-				boolean hasTimeStampInconsistency =false;
-				boolean hasPeriodOnInconsistency = false;
+				long userId_MySQL = resultMySQL.getLong("user_id");
+				long categoryId_MySQL = resultMySQL.getLong("category_id");
+				long typeId_MySQL = resultMySQL.getLong("type_id");
 
 				//Comparing Values
-				if(!name_Postgres.equals(name_MySQL)){
+				if(!Objects.equals(name_Postgres, name_MySQL)){
 					LOGGER.debug("name inconsistency: expected '"+name_Postgres+"' but received '"+name_MySQL+"'");
-					query+= " UPDATE budgets SET name = '"+name_Postgres+"' WHERE id = "+id_MySQL+";";
+					repairs.update("budgets", "name", name_Postgres, id);
 					inconsistencies++;
 				}
-				if(projected_Postgres != projected_MySQL){
+				if(!sameAmount(projected_Postgres, projected_MySQL)){
 					LOGGER.debug("projected inconsistency: expected "+projected_Postgres+" but received "+projected_MySQL);
-					query+= " UPDATE budgets SET projected = "+projected_Postgres+" WHERE id = "+id_MySQL+";";
+					repairs.update("budgets", "projected", projected_Postgres, id);
 					inconsistencies++;
 				}
-				if(actual_Postgres != actual_MySQL){
+				if(!sameAmount(actual_Postgres, actual_MySQL)){
 					LOGGER.debug("actual inconsistency: expected "+actual_Postgres+" but received "+actual_MySQL);
-					query+= " UPDATE budgets SET actual = "+actual_Postgres+" WHERE id = "+id_MySQL+";";
+					repairs.update("budgets", "actual", actual_Postgres, id);
 					inconsistencies++;
 				}
-				
-				// Extract date and time only 
-				String periodOnPostgres = periodOn_Postgres.toString().split("\\.")[0];
-				String periodOnMySQL = periodOn_MySQL.toString().split("\\.")[0];
-				
-				if(!periodOnPostgres.equals(periodOnMySQL)){
-					LOGGER.debug("period_on inconsistency: expected "+periodOn_Postgres.getTime()+" but received "+periodOn_MySQL.getTime());
-					query+= " UPDATE budgets SET period_on = ? WHERE id = "+id_MySQL+";";
-
-					hasPeriodOnInconsistency = true;
+				if(!Objects.equals(periodOn_Postgres, periodOn_MySQL)){
+					LOGGER.debug("period_on inconsistency: expected "+periodOn_Postgres+" but received "+periodOn_MySQL);
+					repairs.update("budgets", "period_on", periodOn_Postgres, id);
 					inconsistencies++;
 				}
-				
-				// Extract date and time only 
-				String timeStampPostgres = timeStamp_Postgres.toString().split("\\.")[0];
-				String timeStampMySQL = timeStamp_MySQL.toString().split("\\.")[0];
-				
-				if(!timeStampPostgres.equals(timeStampMySQL)){
-					LOGGER.debug("created_at inconsistency: expected "+timeStamp_Postgres.getTime()+" but received "+timeStamp_MySQL.getTime());
-					query+= " UPDATE budgets SET created_at = ? WHERE id = "+id_MySQL+";";
-
-					hasTimeStampInconsistency =true;
+				if(!sameSecond(timeStamp_Postgres, timeStamp_MySQL)){
+					LOGGER.debug("created_at inconsistency: expected "+timeStamp_Postgres+" but received "+timeStamp_MySQL);
+					repairs.update("budgets", "created_at", timeStamp_Postgres, id);
 					inconsistencies++;
 				}
-				
 				if(userId_Postgres != userId_MySQL){
 					LOGGER.debug("user_id inconsistency: expected "+userId_Postgres+" but received "+userId_MySQL);
-					query+= " UPDATE budgets SET user_id = "+userId_Postgres+" WHERE id = "+id_MySQL+";";
+					repairs.update("budgets", "user_id", userId_Postgres, id);
 					inconsistencies++;
 				}
 				if(categoryId_Postgres != categoryId_MySQL){
 					LOGGER.debug("category_id inconsistency: expected "+categoryId_Postgres+" but received "+categoryId_MySQL);
-					query+= " UPDATE budgets SET category_id = "+categoryId_Postgres+" WHERE id = "+id_MySQL+";";
+					repairs.update("budgets", "category_id", categoryId_Postgres, id);
 					inconsistencies++;
 				}
 				if(typeId_Postgres != typeId_MySQL){
 					LOGGER.debug("type_id inconsistency: expected "+typeId_Postgres+" but received "+typeId_MySQL);
-					query+= " UPDATE budgets SET type_id = "+typeId_Postgres+" WHERE id = "+id_MySQL+";";
+					repairs.update("budgets", "type_id", typeId_Postgres, id);
 					inconsistencies++;
 				}
-
-				PreparedStatement preparedStmt = conMySQL.prepareStatement(query);
-
-				if(hasPeriodOnInconsistency && hasTimeStampInconsistency) {
-					preparedStmt.setDate(1, periodOn_Postgres);
-					preparedStmt.setTimestamp(2, timeStamp_Postgres);
-				}
-				else if (hasPeriodOnInconsistency && !hasTimeStampInconsistency) {
-					preparedStmt.setDate(1, periodOn_Postgres);
-				}
-				else if (!hasPeriodOnInconsistency && hasTimeStampInconsistency) {
-					preparedStmt.setTimestamp(1, timeStamp_Postgres);
-				}
-
-
-				try {
-					if(query != "")
-						preparedStmt.execute();
-				}
-				catch (SQLIntegrityConstraintViolationException  e) {
-					LOGGER.error("budgets table checking failed");
-					e.printStackTrace();
-				}
-
-				//Enable foreign key checks
-				Statement enableFKChecks = conMySQL.createStatement();
-				enableFKChecks.executeQuery("SET FOREIGN_KEY_CHECKS=1");
-			}
+			});
 		} catch (SQLException e) {
-			e.printStackTrace();
+			LOGGER.error("budgets table checking failed", e);
+			return afterId;
 		}
-	}	/**
+	}
+	/**
 	 * Compares the contents of the categories table
 	 */
 	public void checkCategories(){
+		checkCategories(0, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Compares the categories rows with an id above the given watermark
+	 * @param afterId watermark, only rows with a greater id are compared
+	 * @param limit maximum number of rows to compare
+	 * @return id of the last row compared, <code>afterId</code> when there was nothing to compare
+	 */
+	public long checkCategories(long afterId, int limit){
 		LOGGER.info("*************Checking Categories**************");
 		try {
-
-			Statement stmtPostgres = conPostgres.createStatement( );
-			ResultSet resultPostgres = stmtPostgres.executeQuery("SELECT * FROM categories");
-
-			Statement stmtMySQL = conMySQL.createStatement( );
-			ResultSet resultMySQL = stmtMySQL.executeQuery("SELECT * FROM categories");
-
-			while(resultPostgres.next() && resultMySQL.next()) {
+			return mergeJoin("categories", afterId, limit, (resultPostgres, resultMySQL, id) -> {
 
 				// Getting values from the old database (Postgres)
-				int id_Postgres = resultPostgres.getInt("id");
 				String name_Postgres = resultPostgres.getString("name");
 				String type_Postgres = resultPostgres.getString("type");
 				Timestamp timeStamp_Postgres = resultPostgres.getTimestamp("created_at");
-				int userId_Postgres = resultPostgres.getInt("user_id");
+				long userId_Postgres = resultPostgres.getLong("user_id");
 
 				// Getting values from the new database (MySQL)
-				int id_MySQL = resultMySQL.getInt("id");
 				String name_MySQL = resultMySQL.getString("name");
 				String type_MySQL = resultMySQL.getString("type");
 				Timestamp timeStamp_MySQL = resultMySQL.getTimestamp("created_at");
-				int userId_MySQL = resultMySQL.getInt("user_id");
-
-				//Disable foreign key checks
-				Statement disableFKChecks = conMySQL.createStatement();
-				disableFKChecks.executeQuery("SET FOREIGN_KEY_CHECKS=0");
-
-				// Copying data into new storage (MySQL)
-				String query = "";
-				boolean hasTimeStampInconsistency = false;
+				long userId_MySQL = resultMySQL.getLong("user_id");
 
 				//Comparing Values
-				if(!name_Postgres.equals(name_MySQL)){
+				if(!Objects.equals(name_Postgres, name_MySQL)){
 					LOGGER.debug("name inconsistency: expected '"+name_Postgres+"' but received '"+name_MySQL+"'");
-					query+= " UPDATE categories SET name = '"+name_Postgres+"' WHERE id = "+id_MySQL+";";
+					repairs.update("categories", "name", name_Postgres, id);
 					inconsistencies++;
 				}
-				if(!type_Postgres.equals(type_MySQL)){
+				if(!Objects.equals(type_Postgres, type_MySQL)){
 					LOGGER.debug("type inconsistency: expected '"+type_Postgres+"' but received '"+type_MySQL+"'");
-					query+= " UPDATE categories SET type = '"+type_Postgres+"' WHERE id = "+id_MySQL+";";
+					repairs.update("categories", "type", type_Postgres, id);
 					inconsistencies++;
 				}
-
-				// Extract date and time only 
-				String timeStampPostgres = timeStamp_Postgres.toString().split("\\.")[0];
-				String timeStampMySQL = timeStamp_MySQL.toString().split("\\.")[0];
-
-				if(!timeStampPostgres.equals(timeStampMySQL)){
-					LOGGER.debug("created_at inconsistency: expected "+timeStamp_Postgres.getTime()+" but received "+timeStamp_MySQL.getTime() + " at index " + id_MySQL);
-					query+= " UPDATE categories SET created_at = ? WHERE id = "+id_MySQL+";";
-					hasTimeStampInconsistency = true;
+				if(!sameSecond(timeStamp_Postgres, timeStamp_MySQL)){
+					LOGGER.debug("created_at inconsistency: expected "+timeStamp_Postgres+" but received "+timeStamp_MySQL + " at index " + id);
+					repairs.update("categories", "created_at", timeStamp_Postgres, id);
 					inconsistencies++;
 				}
 				if(userId_Postgres != userId_MySQL){
 					LOGGER.debug("user_id inconsistency: expected "+userId_Postgres+" but received "+userId_MySQL);
-					query+= " UPDATE categories SET user_id = "+userId_Postgres+" WHERE id = "+id_MySQL+";";
+					repairs.update("categories", "user_id", userId_Postgres, id);
 					inconsistencies++;
 				}
-
-
-				PreparedStatement preparedStmt = conMySQL.prepareStatement(query);
-				//adding in the Timestamp variable to the statement if it was inconsistent
-				if(hasTimeStampInconsistency){
-					preparedStmt.setTimestamp(1, timeStamp_Postgres);
-				}
-
-				try {
-					if(query != "")
-						preparedStmt.execute();
-				}
-				catch (SQLIntegrityConstraintViolationException  e) {
-					LOGGER.error("categories table checking failed");
-					e.printStackTrace();
-				}
-
-				//Enable foreign key checks
-				Statement enableFKChecks = conMySQL.createStatement();
-				enableFKChecks.executeQuery("SET FOREIGN_KEY_CHECKS=1");
-				hasTimeStampInconsistency = false;
-			}
+			});
 		} catch (SQLException e) {
-			e.printStackTrace();
+			LOGGER.error("categories table checking failed", e);
+			return afterId;
 		}
 	}
 	/**
 	 * Compares the contents of the recurring table
 	 */
 	public void checkRecurrings(){
+		checkRecurrings(0, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Compares the recurrings rows with an id above the given watermark
+	 * @param afterId watermark, only rows with a greater id are compared
+	 * @param limit maximum number of rows to compare
+	 * @return id of the last row compared, <code>afterId</code> when there was nothing to compare
+	 */
+	public long checkRecurrings(long afterId, int limit){
 		LOGGER.info("*************Checking Recurrings**************");
 		try {
-
-			Statement stmtPostgres = conPostgres.createStatement( );
-			ResultSet resultPostgres = stmtPostgres.executeQuery("SELECT * FROM recurrings");
-
-			Statement stmtMySQL = conMySQL.createStatement( );
-			ResultSet resultMySQL = stmtMySQL.executeQuery("SELECT * FROM recurrings");
-
-			while(resultPostgres.next() && resultMySQL.next()) {
+			return mergeJoin("recurrings", afterId, limit, (resultPostgres, resultMySQL, id) -> {
 
 				// Getting values from the old database (Postgres)
-				int id_Postgres = resultPostgres.getInt("id");
-				double amount_Postgres = resultPostgres.getDouble("amount");
+				BigDecimal amount_Postgres = resultPostgres.getBigDecimal("amount");
 				String type_Postgres = resultPostgres.getString("type");
 				Timestamp lastRun_Postgres = resultPostgres.getTimestamp("last_run_at");
 				Timestamp timeStamp_Postgres = resultPostgres.getTimestamp("created_at");
-				int budgetTypeId_Postgres = resultPostgres.getInt("budget_type_id");
+				long budgetTypeId_Postgres = resultPostgres.getLong("budget_type_id");
 				String remark_Postgres = resultPostgres.getString("remark");
 
 				// Getting values from the new database (MySQL)
-				int id_MySQL = resultMySQL.getInt("id");
-				double amount_MySQL = resultMySQL.getDouble("amount");
+				BigDecimal amount_MySQL = resultMySQL.getBigDecimal("amount");
 				String type_MySQL = resultMySQL.getString("type");
 				Timestamp lastRun_MySQL = resultMySQL.getTimestamp("last_run_at");
 				Timestamp timeStamp_MySQL = resultMySQL.getTimestamp("created_at");
-				int budgetTypeId_MySQL = resultMySQL.getInt("budget_type_id");
+				long budgetTypeId_MySQL = resultMySQL.getLong("budget_type_id");
 				String remark_MySQL = resultMySQL.getString("remark");
 
-				//Disable foreign key checks
-				Statement disableFKChecks = conMySQL.createStatement();
-				disableFKChecks.executeQuery("SET FOREIGN_KEY_CHECKS=0");
-
-				String query ="";
-				boolean lastRunInconsistency =false;
-				boolean timeStampInconsistency = false;
-
 				//Comparing values
-				if(amount_Postgres != amount_MySQL){
+				if(!sameAmount(amount_Postgres, amount_MySQL)){
 					LOGGER.debug("amount inconsistency: expected "+amount_Postgres+" but received "+amount_MySQL);
-					query+= " UPDATE recurrings SET amount = "+amount_Postgres+" WHERE id = "+id_MySQL+";";
+					repairs.update("recurrings", "amount", amount_Postgres, id);
 					inconsistencies++;
 				}
-
-				if(!type_Postgres.equals(type_MySQL)){
+				if(!Objects.equals(type_Postgres, type_MySQL)){
 					LOGGER.debug("type inconsistency: expected '"+type_Postgres+"' but received '"+type_MySQL+"'");
-					query+= " UPDATE recurrings SET type = '"+type_Postgres+"' WHERE id = "+id_MySQL+";";
+					repairs.update("recurrings", "type", type_Postgres, id);
 					inconsistencies++;
 				}
-
-				// Extract date and time only 
-				String lastRunPostgres = lastRun_Postgres.toString().split("\\.")[0];
-				String lastRunMySQL = lastRun_MySQL.toString().split("\\.")[0];
-
-				if(!lastRunPostgres.equals(lastRunMySQL)){
-					LOGGER.debug("last_run_at inconsistency: expected "+lastRun_Postgres.getTime()+" but received "+lastRun_MySQL.getTime());
-					query+= " UPDATE recurrings SET last_run_at = ? WHERE id = "+id_MySQL+";";
-					lastRunInconsistency = true;
+				if(!sameSecond(lastRun_Postgres, lastRun_MySQL)){
+					LOGGER.debug("last_run_at inconsistency: expected "+lastRun_Postgres+" but received "+lastRun_MySQL);
+					repairs.update("recurrings", "last_run_at", lastRun_Postgres, id);
 					inconsistencies++;
 				}
-
-				// Extract date and time only 
-				String timeStampPostgres = timeStamp_Postgres.toString().split("\\.")[0];
-				String timeStampMySQL = timeStamp_MySQL.toString().split("\\.")[0];
-
-				if(!timeStampPostgres.equals(timeStampMySQL)){
-					LOGGER.debug("created_at inconsistency: expected "+timeStamp_Postgres.getTime()+" but received "+timeStamp_MySQL.getTime());
-					query+= " UPDATE recurrings SET created_at = ? WHERE id = "+id_MySQL+";";
-					timeStampInconsistency = true;
+				if(!sameSecond(timeStamp_Postgres, timeStamp_MySQL)){
+					LOGGER.debug("created_at inconsistency: expected "+timeStamp_Postgres+" but received "+timeStamp_MySQL);
+					repairs.update("recurrings", "created_at", timeStamp_Postgres, id);
 					inconsistencies++;
 				}
-
 				if(budgetTypeId_Postgres != budgetTypeId_MySQL){
 					LOGGER.debug("budget_type_id inconsistency: expected "+budgetTypeId_Postgres+" but received "+budgetTypeId_MySQL);
-					query+= " UPDATE recurrings SET budget_type_id = "+budgetTypeId_Postgres+" WHERE id = "+id_MySQL+";";
+					repairs.update("recurrings", "budget_type_id", budgetTypeId_Postgres, id);
 					inconsistencies++;
 				}
-				if(!remark_Postgres.equals(remark_MySQL)){
-					LOGGER.debug("remark inconsistency: expected "+remark_Postgres+" but received '"+remark_MySQL+"'");
-					query+= " UPDATE recurrings SET remark = "+remark_Postgres+" WHERE id = "+id_MySQL+";";
+				if(!Objects.equals(remark_Postgres, remark_MySQL)){
+					LOGGER.debug("remark inconsistency: expected '"+remark_Postgres+"' but received '"+remark_MySQL+"'");
+					repairs.update("recurrings", "remark", remark_Postgres, id);
 					inconsistencies++;
 				}
-
-				//forming all the queries into a statement
-				PreparedStatement preparedStmt = conMySQL.prepareStatement(query);
-
-
-				if(lastRunInconsistency && timeStampInconsistency) {
-					preparedStmt.setTimestamp(1, lastRun_Postgres);
-					preparedStmt.setTimestamp(2, timeStamp_Postgres);
-				}
-				else if (lastRunInconsistency && !timeStampInconsistency) {
-					preparedStmt.setTimestamp(1, lastRun_Postgres);
-				}
-				else if (!lastRunInconsistency && timeStampInconsistency) {
-					preparedStmt.setTimestamp(1, timeStamp_Postgres);
-				}
-
-				try {
-					if(query != "")
-						preparedStmt.execute();
-				}
-				catch (SQLIntegrityConstraintViolationException  e) {
-					LOGGER.error("recurrings table checking failed");
-					e.printStackTrace();
-				}
-
-				//Enable foreign key checks
-				Statement enableFKChecks = conMySQL.createStatement();
-				enableFKChecks.executeQuery("SET FOREIGN_KEY_CHECKS=1");
-
-			}
+			});
 		} catch (SQLException e) {
-			e.printStackTrace();
+			LOGGER.error("recurrings table checking failed", e);
+			return afterId;
 		}
 
 	}
@@ -539,141 +556,89 @@ public class ConsistencyChecker {
 	 * Compares the contents of the transaction table
 	 */
 	public void checkTransactions(){
+		checkTransactions(0, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Compares the transactions rows with an id above the given watermark
+	 * @param afterId watermark, only rows with a greater id are compared
+	 * @param limit maximum number of rows to compare
+	 * @return id of the last row compared, <code>afterId</code> when there was nothing to compare
+	 */
+	public long checkTransactions(long afterId, int limit){
 		LOGGER.info("************Checking Transactions*************");
 		try {
-
-			Statement stmtPostgres = conPostgres.createStatement( );
-			ResultSet resultPostgres = stmtPostgres.executeQuery("SELECT * FROM transactions");
-
-			Statement stmtMySQL = conMySQL.createStatement( );
-			ResultSet resultMySQL = stmtMySQL.executeQuery("SELECT * FROM transactions");
-
-
-			while(resultPostgres.next() & resultMySQL.next()) {
+			return mergeJoin("transactions", afterId, limit, (resultPostgres, resultMySQL, id) -> {
 
 				// Getting values from the old database (Postgres)
-				int id_Postgres = resultPostgres.getInt("id");
 				String name_Postgres = resultPostgres.getString("name");
-				double amount_Postgres = resultPostgres.getDouble("amount");
+				BigDecimal amount_Postgres = resultPostgres.getBigDecimal("amount");
 				String remark_Postgres = resultPostgres.getString("remark");
 				boolean auto_Postgres = resultPostgres.getBoolean("auto");
 				Timestamp transactionOn_Postgres = resultPostgres.getTimestamp("transaction_on");
 				Timestamp timeStamp_Postgres = resultPostgres.getTimestamp("created_at");
-				int budgetId_Postgres = resultPostgres.getInt("budget_id");
-				int recurringId_Postgres = resultPostgres.getInt("recurring_id");
+				long budgetId_Postgres = resultPostgres.getLong("budget_id");
+				Long recurringId_Postgres = getId(resultPostgres, "recurring_id");
 
 				// Getting values from the new database (MySQL)
-				int id_MySQL = resultMySQL.getInt("id");
 				String name_MySQL = resultMySQL.getString("name");
-				double amount_MySQL = resultMySQL.getDouble("amount");
+				BigDecimal amount_MySQL = resultMySQL.getBigDecimal("amount");
 				String remark_MySQL = resultMySQL.getString("remark");
 				boolean auto_MySQL = resultMySQL.getBoolean("auto");
 				Timestamp transactionOn_MySQL = resultMySQL.getTimestamp("transaction_on");
 				Timestamp timeStamp_MySQL = resultMySQL.getTimestamp("created_at");
-				int budgetId_MySQL = resultMySQL.getInt("budget_id");
-				int recurringId_MySQL = resultMySQL.getInt("recurring_id");
-
-				// Disable foreign key checks
-				Statement disableFKChecks = conMySQL.createStatement();
-				disableFKChecks.executeQuery("SET FOREIGN_KEY_CHECKS=0");
-
-				String query = "";
-				boolean timeStampInconsistency = false;
-				boolean transactionOnInconsistency =false;
-
+				long budgetId_MySQL = resultMySQL.getLong("budget_id");
+				Long recurringId_MySQL = getId(resultMySQL, "recurring_id");
 
 				// Comparing values
-				if(!name_Postgres.equals(name_MySQL)){
+				if(!Objects.equals(name_Postgres, name_MySQL)){
 					LOGGER.debug("name inconsistency: expected '"+name_Postgres+"' but received '"+name_MySQL+"'");
-
-					query+= " UPDATE transactions SET name = '"+name_Postgres+"' WHERE id = "+id_MySQL+";";
+					repairs.update("transactions", "name", name_Postgres, id);
 					inconsistencies++;
 				}
-				if(amount_Postgres != amount_MySQL){
+				if(!sameAmount(amount_Postgres, amount_MySQL)){
 					LOGGER.debug("amount inconsistency: expected "+amount_Postgres+" but received "+amount_MySQL);
-					query+= " UPDATE transactions SET amount = "+amount_Postgres+" WHERE id = "+id_MySQL+";";
+					repairs.update("transactions", "amount", amount_Postgres, id);
 					inconsistencies++;
 				}
-				if(!remark_Postgres.equals(remark_MySQL)){
+				if(!Objects.equals(remark_Postgres, remark_MySQL)){
 					LOGGER.debug("remark inconsistency: expected '"+remark_Postgres+"' but received '"+remark_MySQL+"'");
-					query+= " UPDATE transactions SET remark = '"+remark_Postgres+"' WHERE id = "+id_MySQL+";";
+					repairs.update("transactions", "remark", remark_Postgres, id);
 					inconsistencies++;
 				}
 				if(auto_Postgres != auto_MySQL){
 					LOGGER.debug("auto inconsistency: expected "+auto_Postgres+" but received "+auto_MySQL);
-					query+= " UPDATE transactions SET auto = "+auto_Postgres+" WHERE id = "+id_MySQL+";";
+					repairs.update("transactions", "auto", auto_Postgres, id);
 					inconsistencies++;
 				}
-				
-				// Extract date and time only 
-				String transactionOnPostgres = transactionOn_Postgres.toString().split("\\.")[0];
-				String transactionOnMySQL = transactionOn_MySQL.toString().split("\\.")[0];
-				
-				if(!transactionOnPostgres.equals(transactionOnMySQL)){
-					LOGGER.debug("transaction_on inconsistency: expected "+transactionOn_Postgres.getTime()+" but received "+transactionOn_MySQL.getTime());
-					query+= " UPDATE transactions SET transaction_on = ? WHERE id = "+id_MySQL+";";
-
-					transactionOnInconsistency = true;
+				if(!sameSecond(transactionOn_Postgres, transactionOn_MySQL)){
+					LOGGER.debug("transaction_on inconsistency: expected "+transactionOn_Postgres+" but received "+transactionOn_MySQL);
+					repairs.update("transactions", "transaction_on", transactionOn_Postgres, id);
 					inconsistencies++;
 				}
-				
-				
-				// Extract date and time only 
-				String timeStampPostgres = timeStamp_Postgres.toString().split("\\.")[0];
-				String timeStampMySQL = timeStamp_MySQL.toString().split("\\.")[0];
-				
-				if(!timeStampPostgres.equals(timeStampMySQL)){
-					LOGGER.debug("created_at inconsistency: expected "+timeStamp_Postgres.getTime()+" but received "+timeStamp_MySQL.getTime());
-					query+= " UPDATE transactions SET created_at = ? WHERE id = "+id_MySQL+";";
-					timeStampInconsistency = true;
+				if(!sameSecond(timeStamp_Postgres, timeStamp_MySQL)){
+					LOGGER.debug("created_at inconsistency: expected "+timeStamp_Postgres+" but received "+timeStamp_MySQL);
+					repairs.update("transactions", "created_at", timeStamp_Postgres, id);
 					inconsistencies++;
 				}
 				if(budgetId_Postgres != budgetId_MySQL){
 					LOGGER.debug("budget_id inconsistency: expected "+budgetId_Postgres+" but received "+budgetId_MySQL);
-					query+= " UPDATE transactions SET budget_id = "+budgetId_Postgres+" WHERE id = "+id_MySQL+";";
+					repairs.update("transactions", "budget_id", budgetId_Postgres, id);
 					inconsistencies++;
 				}
-				if(recurringId_Postgres != recurringId_MySQL){
+				if(!Objects.equals(recurringId_Postgres, recurringId_MySQL)){
 					LOGGER.debug("recurring_id inconsistency: expected "+recurringId_Postgres+" but received "+recurringId_MySQL);
-					query+= " UPDATE transactions SET recurring_id = "+recurringId_Postgres+" WHERE id = "+id_MySQL+";";
+					repairs.update("transactions", "recurring_id", recurringId_Postgres, id);
 					inconsistencies++;
 				}
-
-
-				// taking all of the MySQL queries and executing them
-				PreparedStatement preparedStmt = conMySQL.prepareStatement(query);
-
-
-				if(transactionOnInconsistency && timeStampInconsistency) {
-					preparedStmt.setTimestamp(1, transactionOn_Postgres);
-					preparedStmt.setTimestamp(2, timeStamp_Postgres);
-				}
-				else if (transactionOnInconsistency && !timeStampInconsistency) {
-					preparedStmt.setTimestamp(1, transactionOn_Postgres);
-				}
-				else if (!transactionOnInconsistency && timeStampInconsistency) {
-					preparedStmt.setTimestamp(1, timeStamp_Postgres);
-				}
-
-				try {
-					if(query != "")
-						preparedStmt.execute();
-				}
-				catch (SQLIntegrityConstraintViolationException  e) {
-					LOGGER.error("transactions table checking failed");
-					e.printStackTrace();
-				}
-
-				//Enable foreign key checks
-				Statement enableFKChecks = conMySQL.createStatement();
-				enableFKChecks.executeQuery("SET FOREIGN_KEY_CHECKS=1");
-
-
-			}
+			});
 		} catch (SQLException e) {
-			e.printStackTrace();
+			LOGGER.error("transactions table checking failed", e);
+			return afterId;
 		}
 	}
 
-
-}
\ No newline at end of file
+	private interface RowComparison {
+		void compare(ResultSet resultPostgres, ResultSet resultMySQL, long id) throws SQLException;
+	}
+}
@@ -0,0 +1,96 @@
+package io.budgetapp.checker;
+
+/**
+ * SQL fragments that render a row the same way on Postgres and MySQL, so both stores
+ * produce identical digests for identical data
+ */
+public enum Dialect {
+
+    POSTGRES {
+        @Override
+        String text(String column) {
+            return column + "::text";
+        }
+
+        @Override
+        String timestamp(String column) {
+            return "to_char(" + column + ", 'YYYY-MM-DD HH24:MI:SS')";
+        }
+
+        @Override
+        String date(String column) {
+            return "to_char(" + column + ", 'YYYY-MM-DD')";
+        }
+
+        @Override
+        String hash32(String md5) {
+            return "('x' || substr(" + md5 + ", 1, 8))::bit(32)::bigint";
+        }
+
+        @Override
+        String bucket(String column) {
+            return "(" + column + " - ?) / ?";
+        }
+    },
+
+    MYSQL {
+        @Override
+        String text(String column) {
+            return "CAST(" + column + " AS CHAR)";
+        }
+
+        @Override
+        String timestamp(String column) {
+            return "DATE_FORMAT(" + column + ", '%Y-%m-%d %H:%i:%s')";
+        }
+
+        @Override
+        String date(String column) {
+            return "DATE_FORMAT(" + column + ", '%Y-%m-%d')";
+        }
+
+        @Override
+        String hash32(String md5) {
+            return "CAST(CONV(SUBSTRING(" + md5 + ", 1, 8), 16, 10) AS UNSIGNED)";
+        }
+
+        @Override
+        String bucket(String column) {
+            return "(" + column + " - ?) DIV ?";
+        }
+    };
+
+    /**
+     * numbers and strings, decimals keep their scale on both sides
+     */
+    abstract String text(String column);
+
+    /**
+     * timestamps truncated to seconds, MySQL does not keep fractions
+     */
+    abstract String timestamp(String column);
+
+    abstract String date(String column);
+
+    String bool(String column) {
+        return "CASE WHEN " + column + " THEN '1' ELSE '0' END";
+    }
+
+    /**
+     * @param md5 expression producing a hex md5
+     * @return the first 32 bits of the md5 as an unsigned number, safe to SUM over millions of rows
+     */
+    abstract String hash32(String md5);
+
+    /**
+     * integer bucket of a column, binds the range start and the bucket width
+     */
+    abstract String bucket(String column);
+
+    /**
+     * md5 of the row, columns joined with '|'. <code>concat_ws</code> skips nulls the same way on both stores
+     */
+    String rowHash(String... columns) {
+        return "md5(concat_ws('|', " + String.join(", ", columns) + "))";
+    }
+}
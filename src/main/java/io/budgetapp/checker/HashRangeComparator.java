@@ -0,0 +1,163 @@
+package io.budgetapp.checker;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.function.Function;
+
+/**
+ * Compares a table across Postgres and MySQL without pulling rows over the wire. Each store
+ * sums a 32 bit row hash per id bucket in SQL, only buckets whose (count, sum) differ are split
+ * further, and once a bucket is small enough the per-row md5s are compared to find the exact ids.
+ */
+public class HashRangeComparator {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(HashRangeComparator.class);
+
+    private static final Map<String, Function<Dialect, String[]>> COLUMNS = new HashMap<>();
+
+    static {
+        COLUMNS.put("users", d -> new String[] {"username", "password", "name", d.timestamp("created_at"), "currency"});
+        COLUMNS.put("budget_types", d -> new String[] {d.timestamp("created_at")});
+        COLUMNS.put("budgets", d -> new String[] {"name", d.text("projected"), d.text("actual"), d.date("period_on"), d.timestamp("created_at"), d.text("user_id"), d.text("category_id"), d.text("type_id")});
+        COLUMNS.put("categories", d -> new String[] {"name", "type", d.timestamp("created_at"), d.text("user_id")});
+        COLUMNS.put("recurrings", d -> new String[] {d.text("amount"), "type", d.timestamp("last_run_at"), d.timestamp("created_at"), d.text("budget_type_id"), "remark"});
+        COLUMNS.put("transactions", d -> new String[] {"name", d.text("amount"), "remark", d.bool("auto"), d.timestamp("transaction_on"), d.timestamp("created_at"), d.text("budget_id"), d.text("recurring_id")});
+    }
+
+    private final Connection conPostgres;
+    private final Connection conMySQL;
+    private final int fanout;
+    private final int leafSize;
+
+    /**
+     * @param fanout number of buckets a differing range is split into
+     * @param leafSize ranges with at most this many rows are compared row by row
+     */
+    public HashRangeComparator(Connection conPostgres, Connection conMySQL, int fanout, int leafSize) {
+        if(fanout < 2) {
+            throw new IllegalArgumentException("fanout must be at least 2");
+        }
+        this.conPostgres = conPostgres;
+        this.conMySQL = conMySQL;
+        this.fanout = fanout;
+        this.leafSize = leafSize;
+    }
+
+    public static Set<String> tables() {
+        return Collections.unmodifiableSet(COLUMNS.keySet());
+    }
+
+    /**
+     * @param table table to compare
+     * @param maxId only rows with an id up to and including this one are compared
+     * @return ids that differ, are missing in MySQL or only exist in MySQL
+     */
+    public SortedSet<Long> compare(String table, long maxId) throws SQLException {
+        if(!COLUMNS.containsKey(table)) {
+            throw new IllegalArgumentException("Unknown table " + table);
+        }
+        SortedSet<Long> divergent = new TreeSet<>();
+        long start = Math.min(minId(conPostgres, table), minId(conMySQL, table));
+        if(start > maxId) {
+            return divergent;
+        }
+        int queries = 0;
+        Deque<long[]> ranges = new ArrayDeque<>();
+        ranges.push(new long[] {start, maxId + 1});
+        while(!ranges.isEmpty()) {
+            long[] range = ranges.pop();
+            long width = (range[1] - range[0] + fanout - 1) / fanout;
+            Map<Long, long[]> postgres = digests(conPostgres, Dialect.POSTGRES, table, range[0], range[1], width);
+            Map<Long, long[]> mySQL = digests(conMySQL, Dialect.MYSQL, table, range[0], range[1], width);
+            queries += 2;
+
+            Set<Long> buckets = new HashSet<>(postgres.keySet());
+            buckets.addAll(mySQL.keySet());
+            for (Long bucket : buckets) {
+                long[] digestPostgres = postgres.getOrDefault(bucket, new long[2]);
+                long[] digestMySQL = mySQL.getOrDefault(bucket, new long[2]);
+                if(digestPostgres[0] == digestMySQL[0] && digestPostgres[1] == digestMySQL[1]) {
+                    continue;
+                }
+                long from = range[0] + bucket * width;
+                long to = Math.min(from + width, range[1]);
+                if(width == 1 || Math.max(digestPostgres[0], digestMySQL[0]) <= leafSize) {
+                    divergent.addAll(diffRows(table, from, to));
+                    queries += 2;
+                } else {
+                    ranges.push(new long[] {from, to});
+                }
+            }
+        }
+        LOGGER.info("Hash range compare of {} found {} divergent row(s) in {} queries", table, divergent.size(), queries);
+        return divergent;
+    }
+
+    private long minId(Connection con, String table) throws SQLException {
+        try(PreparedStatement stmt = con.prepareStatement("SELECT MIN(id) FROM " + table);
+            ResultSet result = stmt.executeQuery()) {
+            result.next();
+            long min = result.getLong(1);
+            return result.wasNull() ? Long.MAX_VALUE : min;
+        }
+    }
+
+    /**
+     * @return bucket number to {row count, sum of row hashes}, empty buckets are absent
+     */
+    private Map<Long, long[]> digests(Connection con, Dialect dialect, String table, long from, long to, long width) throws SQLException {
+        String sql = "SELECT " + dialect.bucket("id") + " AS bucket, COUNT(*), SUM(" + dialect.hash32(dialect.rowHash(COLUMNS.get(table).apply(dialect))) + ")"
+                + " FROM " + table + " WHERE id >= ? AND id < ? GROUP BY 1";
+        Map<Long, long[]> digests = new HashMap<>();
+        try(PreparedStatement stmt = con.prepareStatement(sql)) {
+            stmt.setLong(1, from);
+            stmt.setLong(2, width);
+            stmt.setLong(3, from);
+            stmt.setLong(4, to);
+            try(ResultSet result = stmt.executeQuery()) {
+                while(result.next()) {
+                    digests.put(result.getLong(1), new long[] {result.getLong(2), result.getLong(3)});
+                }
+            }
+        }
+        return digests;
+    }
+
+    private Set<Long> diffRows(String table, long from, long to) throws SQLException {
+        Map<Long, String> postgres = rowHashes(conPostgres, Dialect.POSTGRES, table, from, to);
+        Map<Long, String> mySQL = rowHashes(conMySQL, Dialect.MYSQL, table, from, to);
+        Set<Long> ids = new HashSet<>(postgres.keySet());
+        ids.addAll(mySQL.keySet());
+        ids.removeIf(id -> postgres.containsKey(id) && postgres.get(id).equals(mySQL.get(id)));
+        return ids;
+    }
+
+    private Map<Long, String> rowHashes(Connection con, Dialect dialect, String table, long from, long to) throws SQLException {
+        String sql = "SELECT id, " + dialect.rowHash(COLUMNS.get(table).apply(dialect)) + " FROM " + table + " WHERE id >= ? AND id < ?";
+        Map<Long, String> hashes = new HashMap<>();
+        try(PreparedStatement stmt = con.prepareStatement(sql)) {
+            stmt.setLong(1, from);
+            stmt.setLong(2, to);
+            try(ResultSet result = stmt.executeQuery()) {
+                while(result.next()) {
+                    hashes.put(result.getLong(1), result.getString(2));
+                }
+            }
+        }
+        return hashes;
+    }
+}
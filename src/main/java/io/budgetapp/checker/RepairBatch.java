@@ -0,0 +1,122 @@
+package io.budgetapp.checker;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Collects repairs for MySQL as parameterized statements and writes them as JDBC batches,
+ * one transaction every <code>flushSize</code> rows. In dry-run mode repairs are only counted and logged.
+ */
+public class RepairBatch {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RepairBatch.class);
+
+    private final Connection connection;
+    private final int flushSize;
+    private final boolean dryRun;
+
+    private final Map<String, List<Object[]>> pending = new LinkedHashMap<>();
+    private int pendingRows;
+    private long repaired;
+
+    public RepairBatch(Connection connection, int flushSize, boolean dryRun) {
+        this.connection = connection;
+        this.flushSize = flushSize;
+        this.dryRun = dryRun;
+    }
+
+    /**
+     * queue <code>UPDATE table SET column = value WHERE id = id</code>
+     */
+    public void update(String table, String column, Object value, long id) throws SQLException {
+        add("UPDATE " + table + " SET " + column + " = ? WHERE id = ?", value, id);
+    }
+
+    /**
+     * queue an insert of the whole row that overwrites the row when the id already exists
+     * @param row column name to value, in column order, including the id
+     */
+    public void upsert(String table, Map<String, Object> row) throws SQLException {
+        String columns = String.join(", ", row.keySet());
+        String values = row.keySet().stream().map(column -> "?").collect(Collectors.joining(", "));
+        String updates = row.keySet().stream().map(column -> column + " = VALUES(" + column + ")").collect(Collectors.joining(", "));
+        add("INSERT INTO " + table + " (" + columns + ") VALUES (" + values + ") ON DUPLICATE KEY UPDATE " + updates, row.values().toArray());
+    }
+
+    public void delete(String table, long id) throws SQLException {
+        add("DELETE FROM " + table + " WHERE id = ?", id);
+    }
+
+    /**
+     * @return number of repairs written, or that would have been written in dry-run mode
+     */
+    public long getRepaired() {
+        return repaired;
+    }
+
+    public boolean isDryRun() {
+        return dryRun;
+    }
+
+    private void add(String sql, Object... parameters) throws SQLException {
+        pending.computeIfAbsent(sql, key -> new ArrayList<>()).add(parameters);
+        if(++pendingRows >= flushSize) {
+            flush();
+        }
+    }
+
+    public void flush() throws SQLException {
+        if(pendingRows == 0) {
+            return;
+        }
+        if(dryRun) {
+            pending.forEach((sql, rows) -> LOGGER.info("Dry run, would execute {} time(s): {}", rows.size(), sql));
+        } else {
+            write();
+        }
+        repaired += pendingRows;
+        pending.clear();
+        pendingRows = 0;
+    }
+
+    private void write() throws SQLException {
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try(Statement statement = connection.createStatement()) {
+            // rows are repaired in id order, not in foreign key order
+            statement.execute("SET FOREIGN_KEY_CHECKS=0");
+            try {
+                for (Map.Entry<String, List<Object[]>> entry : pending.entrySet()) {
+                    try(PreparedStatement preparedStmt = connection.prepareStatement(entry.getKey())) {
+                        for (Object[] parameters : entry.getValue()) {
+                            for (int i = 0; i < parameters.length; i++) {
+                                preparedStmt.setObject(i + 1, parameters[i]);
+                            }
+                            preparedStmt.addBatch();
+                        }
+                        preparedStmt.executeBatch();
+                    }
+                }
+                connection.commit();
+                LOGGER.debug("Repaired {} row(s) in MySQL", pendingRows);
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                statement.execute("SET FOREIGN_KEY_CHECKS=1");
+            }
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+}
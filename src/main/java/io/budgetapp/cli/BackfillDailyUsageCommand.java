@@ -0,0 +1,42 @@
+package io.budgetapp.cli;
+
+import io.budgetapp.configuration.AppConfiguration;
+import io.budgetapp.database.DailyUsageBackfill;
+import io.dropwizard.cli.ConfiguredCommand;
+import io.dropwizard.db.ManagedDataSource;
+import io.dropwizard.setup.Bootstrap;
+import net.sourceforge.argparse4j.inf.Namespace;
+import net.sourceforge.argparse4j.inf.Subparser;
+
+/**
+ * Fills the daily_usage rollup from the existing transactions, e.g.
+ * <code>java -jar budgetapp.jar backfill-daily-usage config/config.yml</code>.
+ * Run once after migrating, the application keeps the rollup up to date from then on.
+ */
+public class BackfillDailyUsageCommand extends ConfiguredCommand<AppConfiguration> {
+
+    public BackfillDailyUsageCommand() {
+        super("backfill-daily-usage", "Rebuild the daily_usage rollup from the transactions");
+    }
+
+    @Override
+    public void configure(Subparser subparser) {
+        super.configure(subparser);
+        subparser.addArgument("--range-size")
+                .dest("rangeSize")
+                .type(Long.class)
+                .setDefault(1000L)
+                .help("user ids rebuilt per transaction");
+    }
+
+    @Override
+    protected void run(Bootstrap<AppConfiguration> bootstrap, Namespace namespace, AppConfiguration configuration) throws Exception {
+        ManagedDataSource dataSource = configuration.getDataSourceFactory().build(bootstrap.getMetricRegistry(), "backfill");
+        dataSource.start();
+        try {
+            new DailyUsageBackfill(dataSource, namespace.getLong("rangeSize")).backfill();
+        } finally {
+            dataSource.stop();
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package io.budgetapp.cli;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import io.budgetapp.configuration.AppConfiguration;
+import io.budgetapp.database.ForkLifter;
+import io.dropwizard.cli.ConfiguredCommand;
+import io.dropwizard.db.DataSourceFactory;
+import io.dropwizard.db.ManagedDataSource;
+import io.dropwizard.setup.Bootstrap;
+import net.sourceforge.argparse4j.inf.Namespace;
+import net.sourceforge.argparse4j.inf.Subparser;
+
+import java.util.List;
+
+/**
+ * Copies the Postgres data into the MySQL shadow store, e.g.
+ * <code>java -jar budgetapp.jar forklift --threads 8 config/config.yml</code>.
+ * Rerunning the command resumes from the last checkpoint as long as the range size is unchanged.
+ */
+public class ForkLiftCommand extends ConfiguredCommand<AppConfiguration> {
+
+    public ForkLiftCommand() {
+        super("forklift", "Bulk copy the Postgres tables into the MySQL shadow database");
+    }
+
+    @Override
+    public void configure(Subparser subparser) {
+        super.configure(subparser);
+        subparser.addArgument("--threads")
+                .type(Integer.class)
+                .setDefault(4)
+                .help("number of id ranges copied in parallel");
+        subparser.addArgument("--range-size")
+                .dest("rangeSize")
+                .type(Long.class)
+                .setDefault(100000L)
+                .help("ids per range, keep it unchanged when resuming");
+        subparser.addArgument("--batch-size")
+                .dest("batchSize")
+                .type(Integer.class)
+                .setDefault(500)
+                .help("rows per insert statement");
+        subparser.addArgument("--table")
+                .dest("tables")
+                .nargs("*")
+                .choices(ForkLifter.TABLES)
+                .setDefault(ForkLifter.TABLES)
+                .help("tables to copy, all by default");
+    }
+
+    @Override
+    protected void run(Bootstrap<AppConfiguration> bootstrap, Namespace namespace, AppConfiguration configuration) throws Exception {
+        int threads = namespace.getInt("threads");
+        MetricRegistry metrics = bootstrap.getMetricRegistry();
+        ManagedDataSource postgres = build(configuration.getDataSourceFactory(), metrics, "postgres", threads);
+        ManagedDataSource mySQL = build(configuration.getShadowDataSourceFactory(), metrics, "mysql", threads);
+        postgres.start();
+        mySQL.start();
+        try {
+            Meter rows = metrics.meter(MetricRegistry.name(ForkLifter.class, "rows"));
+            List<String> tables = namespace.getList("tables");
+            new ForkLifter(postgres, mySQL, threads, namespace.getLong("rangeSize"), namespace.getInt("batchSize"), rows).forklift(tables);
+        } finally {
+            mySQL.stop();
+            postgres.stop();
+        }
+    }
+
+    /**
+     * every worker holds one connection on each side, plus one for the checkpoints
+     */
+    private ManagedDataSource build(DataSourceFactory factory, MetricRegistry metrics, String name, int threads) {
+        factory.setMaxSize(Math.max(factory.getMaxSize(), threads + 2));
+        factory.setMinSize(Math.min(factory.getMinSize(), factory.getMaxSize()));
+        return factory.build(metrics, name);
+    }
+}
@@ -3,17 +3,21 @@ package io.budgetapp.configuration;
 import com.bazaarvoice.dropwizard.assets.AssetsBundleConfiguration;
 import com.bazaarvoice.dropwizard.assets.AssetsConfiguration;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.cache.CacheBuilderSpec;
 import io.budgetapp.model.Budget;
 import io.budgetapp.model.Category;
 import io.dropwizard.Configuration;
 import io.dropwizard.db.DataSourceFactory;
+import io.dropwizard.util.Duration;
 
 import javax.validation.Valid;
 import javax.validation.constraints.NotNull;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  *
@@ -24,6 +28,10 @@ public class AppConfiguration extends Configuration implements AssetsBundleConfi
     @NotNull
     private DataSourceFactory database = new DataSourceFactory();
 
+    @Valid
+    @NotNull
+    private DataSourceFactory shadowDatabase = defaultShadowDatabase();
+
     @Valid
     @NotNull
     private final AssetsConfiguration assets = new AssetsConfiguration();
@@ -37,10 +45,47 @@ public class AppConfiguration extends Configuration implements AssetsBundleConfi
     @JsonProperty("budgets")
     private Map<String, List<Budget>> budgets = new LinkedHashMap<>();
 
+    @Valid
+    @NotNull
+    private ShadowWriteConfiguration shadowWrite = new ShadowWriteConfiguration();
+
+    @Valid
+    @NotNull
+    private ShadowReadConfiguration shadowRead = new ShadowReadConfiguration();
+
+    @Valid
+    @NotNull
+    private RecurringJobConfiguration recurringJob = new RecurringJobConfiguration();
+
+    @Valid
+    @NotNull
+    private RolloverJobConfiguration rolloverJob = new RolloverJobConfiguration();
+
+    @Valid
+    @NotNull
+    private ConsistencyCheckConfiguration consistencyCheck = new ConsistencyCheckConfiguration();
+
+    @Valid
+    @NotNull
+    private PasswordConfiguration password = new PasswordConfiguration();
+
+    @NotNull
+    private Set<String> admins = new HashSet<>();
+
+    @NotNull
+    private CacheBuilderSpec authenticationCachePolicy = CacheBuilderSpec.parse("maximumSize=10000, expireAfterWrite=10m");
+
+    @NotNull
+    private CacheBuilderSpec summaryCachePolicy = CacheBuilderSpec.parse("maximumSize=10000, expireAfterWrite=5m");
+
     public DataSourceFactory getDataSourceFactory() {
         return database;
     }
 
+    public DataSourceFactory getShadowDataSourceFactory() {
+        return shadowDatabase;
+    }
+
     @Override
     public AssetsConfiguration getAssetsConfiguration() {
         return assets;
@@ -56,6 +101,11 @@ public class AppConfiguration extends Configuration implements AssetsBundleConfi
         this.database = database;
     }
 
+    @JsonProperty("shadowDatabase")
+    public void setShadowDatabase(DataSourceFactory shadowDatabase) {
+        this.shadowDatabase = shadowDatabase;
+    }
+
     @JsonProperty("categories")
     public void setCategories(List<Category> categories) {
         this.categories = categories;
@@ -72,4 +122,113 @@ public class AppConfiguration extends Configuration implements AssetsBundleConfi
     public Map<String, List<Budget>> getBudgets() {
         return budgets;
     }
+
+    @JsonProperty("shadowWrite")
+    public ShadowWriteConfiguration getShadowWrite() {
+        return shadowWrite;
+    }
+
+    @JsonProperty("shadowWrite")
+    public void setShadowWrite(ShadowWriteConfiguration shadowWrite) {
+        this.shadowWrite = shadowWrite;
+    }
+
+    @JsonProperty("recurringJob")
+    public RecurringJobConfiguration getRecurringJob() {
+        return recurringJob;
+    }
+
+    @JsonProperty("recurringJob")
+    public void setRecurringJob(RecurringJobConfiguration recurringJob) {
+        this.recurringJob = recurringJob;
+    }
+
+    @JsonProperty("rolloverJob")
+    public RolloverJobConfiguration getRolloverJob() {
+        return rolloverJob;
+    }
+
+    @JsonProperty("rolloverJob")
+    public void setRolloverJob(RolloverJobConfiguration rolloverJob) {
+        this.rolloverJob = rolloverJob;
+    }
+
+    @JsonProperty("shadowRead")
+    public ShadowReadConfiguration getShadowRead() {
+        return shadowRead;
+    }
+
+    @JsonProperty("shadowRead")
+    public void setShadowRead(ShadowReadConfiguration shadowRead) {
+        this.shadowRead = shadowRead;
+    }
+
+    @JsonProperty("consistencyCheck")
+    public ConsistencyCheckConfiguration getConsistencyCheck() {
+        return consistencyCheck;
+    }
+
+    @JsonProperty("consistencyCheck")
+    public void setConsistencyCheck(ConsistencyCheckConfiguration consistencyCheck) {
+        this.consistencyCheck = consistencyCheck;
+    }
+
+    @JsonProperty("summaryCachePolicy")
+    public CacheBuilderSpec getSummaryCachePolicy() {
+        return summaryCachePolicy;
+    }
+
+    @JsonProperty("summaryCachePolicy")
+    public void setSummaryCachePolicy(CacheBuilderSpec summaryCachePolicy) {
+        this.summaryCachePolicy = summaryCachePolicy;
+    }
+
+    @JsonProperty("password")
+    public PasswordConfiguration getPassword() {
+        return password;
+    }
+
+    @JsonProperty("password")
+    public void setPassword(PasswordConfiguration password) {
+        this.password = password;
+    }
+
+    /**
+     * usernames allowed on admin only endpoints such as bulk sign up, nobody by default
+     */
+    @JsonProperty("admins")
+    public Set<String> getAdmins() {
+        return admins;
+    }
+
+    @JsonProperty("admins")
+    public void setAdmins(Set<String> admins) {
+        this.admins = admins;
+    }
+
+    @JsonProperty("authenticationCachePolicy")
+    public CacheBuilderSpec getAuthenticationCachePolicy() {
+        return authenticationCachePolicy;
+    }
+
+    @JsonProperty("authenticationCachePolicy")
+    public void setAuthenticationCachePolicy(CacheBuilderSpec authenticationCachePolicy) {
+        this.authenticationCachePolicy = authenticationCachePolicy;
+    }
+
+    /**
+     * local MySQL used by the shadow store, leaked connections are logged and reclaimed
+     */
+    private static DataSourceFactory defaultShadowDatabase() {
+        DataSourceFactory factory = new DataSourceFactory();
+        factory.setDriverClass("com.mysql.jdbc.Driver");
+        factory.setUrl("jdbc:mysql://localhost:3306/345BudgetApp");
+        factory.setUser("root");
+        factory.setPassword("root");
+        factory.setMaxSize(16);
+        factory.setLogAbandonedConnections(true);
+        factory.setRemoveAbandoned(true);
+        factory.setRemoveAbandonedTimeout(Duration.minutes(5));
+        return factory;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,141 @@
+package io.budgetapp.configuration;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.dropwizard.util.Duration;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+/**
+ * Settings for the scheduled MySQL consistency check
+ */
+public class ConsistencyCheckConfiguration {
+
+    @NotNull
+    private Duration interval = Duration.minutes(1);
+
+    @NotNull
+    private Duration leaseDuration = Duration.minutes(5);
+
+    @Min(1)
+    private int batchSize = 1000;
+
+    @NotNull
+    private Duration shadowLag = Duration.minutes(1);
+
+    @NotNull
+    private Duration hashRangeInterval = Duration.hours(1);
+
+    @Min(2)
+    private int hashRangeFanout = 16;
+
+    @Min(1)
+    private int hashRangeLeafSize = 256;
+
+    @Min(1)
+    private int repairBatchSize = 500;
+
+    private boolean dryRun = false;
+
+    @JsonProperty
+    public Duration getInterval() {
+        return interval;
+    }
+
+    @JsonProperty
+    public void setInterval(Duration interval) {
+        this.interval = interval;
+    }
+
+    /**
+     * how long the leader keeps the check without renewing, should be well above a window of batchSize rows
+     */
+    @JsonProperty
+    public Duration getLeaseDuration() {
+        return leaseDuration;
+    }
+
+    @JsonProperty
+    public void setLeaseDuration(Duration leaseDuration) {
+        this.leaseDuration = leaseDuration;
+    }
+
+    @JsonProperty
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    @JsonProperty
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * rows created more recently may still be queued for the shadow writer, the incremental check stops before them
+     */
+    @JsonProperty
+    public Duration getShadowLag() {
+        return shadowLag;
+    }
+
+    @JsonProperty
+    public void setShadowLag(Duration shadowLag) {
+        this.shadowLag = shadowLag;
+    }
+
+    /**
+     * how often the already checked rows are compared again through range digests, to catch updates
+     */
+    @JsonProperty
+    public Duration getHashRangeInterval() {
+        return hashRangeInterval;
+    }
+
+    @JsonProperty
+    public void setHashRangeInterval(Duration hashRangeInterval) {
+        this.hashRangeInterval = hashRangeInterval;
+    }
+
+    @JsonProperty
+    public int getHashRangeFanout() {
+        return hashRangeFanout;
+    }
+
+    @JsonProperty
+    public void setHashRangeFanout(int hashRangeFanout) {
+        this.hashRangeFanout = hashRangeFanout;
+    }
+
+    @JsonProperty
+    public int getHashRangeLeafSize() {
+        return hashRangeLeafSize;
+    }
+
+    @JsonProperty
+    public void setHashRangeLeafSize(int hashRangeLeafSize) {
+        this.hashRangeLeafSize = hashRangeLeafSize;
+    }
+
+    @JsonProperty
+    public int getRepairBatchSize() {
+        return repairBatchSize;
+    }
+
+    @JsonProperty
+    public void setRepairBatchSize(int repairBatchSize) {
+        this.repairBatchSize = repairBatchSize;
+    }
+
+    /**
+     * only report inconsistencies, MySQL is never written
+     */
+    @JsonProperty
+    public boolean isDryRun() {
+        return dryRun;
+    }
+
+    @JsonProperty
+    public void setDryRun(boolean dryRun) {
+        this.dryRun = dryRun;
+    }
+}
@@ -0,0 +1,60 @@
+package io.budgetapp.configuration;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+/**
+ * Settings for password hashing
+ */
+public class PasswordConfiguration {
+
+    @Min(1)
+    private int iterations = 100000;
+
+    @NotNull
+    private String secret = "";
+
+    @Min(1)
+    private int hashThreads = 2;
+
+    /**
+     * PBKDF2 iterations for new hashes, stored hashes below this are re-hashed on the next login
+     */
+    @JsonProperty
+    public int getIterations() {
+        return iterations;
+    }
+
+    @JsonProperty
+    public void setIterations(int iterations) {
+        this.iterations = iterations;
+    }
+
+    /**
+     * site wide secret mixed into every hash, changing it invalidates all stored passwords
+     */
+    @JsonProperty
+    public String getSecret() {
+        return secret;
+    }
+
+    @JsonProperty
+    public void setSecret(String secret) {
+        this.secret = secret;
+    }
+
+    /**
+     * threads hashing the passwords of bulk sign ups, shared by all requests
+     */
+    @JsonProperty
+    public int getHashThreads() {
+        return hashThreads;
+    }
+
+    @JsonProperty
+    public void setHashThreads(int hashThreads) {
+        this.hashThreads = hashThreads;
+    }
+}
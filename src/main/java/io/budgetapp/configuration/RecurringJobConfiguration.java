@@ -0,0 +1,58 @@
+package io.budgetapp.configuration;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.dropwizard.util.Duration;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+/**
+ * Settings for the scheduled recurring job
+ */
+public class RecurringJobConfiguration {
+
+    @NotNull
+    private Duration interval = Duration.seconds(10);
+
+    @NotNull
+    private Duration leaseDuration = Duration.minutes(1);
+
+    @Min(1)
+    private int batchSize = 1000;
+
+    @JsonProperty
+    public Duration getInterval() {
+        return interval;
+    }
+
+    @JsonProperty
+    public void setInterval(Duration interval) {
+        this.interval = interval;
+    }
+
+    /**
+     * how long the leader keeps the job without renewing, should be well above the interval and a chunk of batchSize recurrings
+     */
+    @JsonProperty
+    public Duration getLeaseDuration() {
+        return leaseDuration;
+    }
+
+    @JsonProperty
+    public void setLeaseDuration(Duration leaseDuration) {
+        this.leaseDuration = leaseDuration;
+    }
+
+    /**
+     * recurrings processed and committed together
+     */
+    @JsonProperty
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    @JsonProperty
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+}
@@ -0,0 +1,75 @@
+package io.budgetapp.configuration;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.dropwizard.util.Duration;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+/**
+ * Settings for the scheduled job copying budgets into the next month
+ */
+public class RolloverJobConfiguration {
+
+    @NotNull
+    private Duration interval = Duration.seconds(10);
+
+    @NotNull
+    private Duration leaseDuration = Duration.minutes(1);
+
+    @NotNull
+    private Duration leadTime = Duration.hours(6);
+
+    @Min(1)
+    private int batchSize = 1000;
+
+    @JsonProperty
+    public Duration getInterval() {
+        return interval;
+    }
+
+    @JsonProperty
+    public void setInterval(Duration interval) {
+        this.interval = interval;
+    }
+
+    /**
+     * how long the leader keeps the job without renewing, should be well above the interval and a run
+     */
+    @JsonProperty
+    public Duration getLeaseDuration() {
+        return leaseDuration;
+    }
+
+    @JsonProperty
+    public void setLeaseDuration(Duration leaseDuration) {
+        this.leaseDuration = leaseDuration;
+    }
+
+    /**
+     * how long before the next month starts budgets are copied, budgets changed after the copy
+     * do not carry over
+     */
+    @JsonProperty
+    public Duration getLeadTime() {
+        return leadTime;
+    }
+
+    @JsonProperty
+    public void setLeadTime(Duration leadTime) {
+        this.leadTime = leadTime;
+    }
+
+    /**
+     * users copied and committed together
+     */
+    @JsonProperty
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    @JsonProperty
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+}
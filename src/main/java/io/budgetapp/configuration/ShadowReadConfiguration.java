@@ -0,0 +1,68 @@
+package io.budgetapp.configuration;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import javax.validation.constraints.DecimalMax;
+import javax.validation.constraints.DecimalMin;
+import javax.validation.constraints.Min;
+
+/**
+ * Settings for sampled dual reads against the MySQL shadow store
+ */
+public class ShadowReadConfiguration {
+
+    private boolean enabled = false;
+
+    @DecimalMin("0")
+    @DecimalMax("100")
+    private double samplePercent = 1;
+
+    @Min(1)
+    private int threads = 2;
+
+    @Min(1)
+    private int queueCapacity = 1000;
+
+    @JsonProperty
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @JsonProperty
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * percentage of reads that are repeated against MySQL
+     */
+    @JsonProperty
+    public double getSamplePercent() {
+        return samplePercent;
+    }
+
+    @JsonProperty
+    public void setSamplePercent(double samplePercent) {
+        this.samplePercent = samplePercent;
+    }
+
+    @JsonProperty
+    public int getThreads() {
+        return threads;
+    }
+
+    @JsonProperty
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    @JsonProperty
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    @JsonProperty
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+}
@@ -8,7 +8,8 @@ import java.security.NoSuchAlgorithmException;
  */
 public class Digester {
 
-    private final MessageDigest messageDigest;
+    // MessageDigest is stateful, one per thread keeps concurrent logins off a shared lock
+    private final ThreadLocal<MessageDigest> messageDigest;
 
     private final int iterations;
 
@@ -18,21 +19,25 @@ public class Digester {
      * @param iterations the number of times to apply the digest algorithm to the input
      */
     public Digester(String algorithm, int iterations) {
-        try {
-            messageDigest = MessageDigest.getInstance(algorithm);
-        } catch (NoSuchAlgorithmException e) {
-            throw new IllegalStateException("No such hashing algorithm", e);
-        }
-
+        // fail fast on an unknown algorithm rather than on first use
+        newMessageDigest(algorithm);
+        this.messageDigest = ThreadLocal.withInitial(() -> newMessageDigest(algorithm));
         this.iterations = iterations;
     }
 
     public byte[] digest(byte[] value) {
-        synchronized (messageDigest) {
-            for (int i = 0; i < iterations; i++) {
-                value = messageDigest.digest(value);
-            }
-            return value;
+        MessageDigest digest = messageDigest.get();
+        for (int i = 0; i < iterations; i++) {
+            value = digest.digest(value);
+        }
+        return value;
+    }
+
+    private static MessageDigest newMessageDigest(String algorithm) {
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("No such hashing algorithm", e);
         }
     }
 }
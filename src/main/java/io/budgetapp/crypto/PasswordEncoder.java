@@ -1,38 +1,104 @@
 package io.budgetapp.crypto;
 
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.security.GeneralSecurityException;
+
 
 /**
- *
+ * Hashes passwords with PBKDF2, encoded as <code>pbkdf2$iterations$salt$hash</code>.
+ * Plain hex hashes from the iterated SHA-256 scheme are still verified, {@link #upgradeEncoding}
+ * tells when a stored hash should be replaced.
  */
 public class PasswordEncoder {
 
-    private static final int DEFAULT_ITERATIONS = 1024;
-    private static final String DEFAULT_ALGORITHM = "SHA-256";
+    private static final String PREFIX = "pbkdf2";
+    private static final String SEPARATOR = "$";
+    private static final String PBKDF2_ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final int PBKDF2_SALT_LENGTH = 16;
+    private static final int PBKDF2_KEY_LENGTH = 256;
+    private static final int DEFAULT_PBKDF2_ITERATIONS = 100000;
+
+    private static final int LEGACY_ITERATIONS = 1024;
+    private static final String LEGACY_ALGORITHM = "SHA-256";
 
     private final SaltGenerator saltGenerator;
+    private final SaltGenerator legacySaltGenerator;
     private final Digester digester;
     private final byte[] secret;
+    private final int iterations;
 
     public PasswordEncoder() {
         this("");
     }
 
     public PasswordEncoder(String secret) {
-        this.digester = new Digester(DEFAULT_ALGORITHM, DEFAULT_ITERATIONS);
+        this(secret, DEFAULT_PBKDF2_ITERATIONS);
+    }
+
+    public PasswordEncoder(String secret, int iterations) {
+        this.digester = new Digester(LEGACY_ALGORITHM, LEGACY_ITERATIONS);
         this.secret = Utf8.encode(secret);
-        this.saltGenerator = new SaltGenerator();
+        this.iterations = iterations;
+        this.saltGenerator = new SaltGenerator(PBKDF2_SALT_LENGTH);
+        this.legacySaltGenerator = new SaltGenerator();
     }
 
     public String encode(CharSequence rawPassword) {
-        return encode(rawPassword, saltGenerator.generateKey());
+        byte[] salt = saltGenerator.generateKey();
+        byte[] hash = pbkdf2(rawPassword, salt, iterations);
+        return PREFIX + SEPARATOR + iterations
+                + SEPARATOR + new String(Hex.encode(salt))
+                + SEPARATOR + new String(Hex.encode(hash));
     }
 
     public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        if (!isPbkdf2(encodedPassword)) {
+            return matchesLegacy(rawPassword, encodedPassword);
+        }
+        String[] parts = encodedPassword.split("\\" + SEPARATOR);
+        if (parts.length != 4) {
+            return false;
+        }
+        int cost = Integer.parseInt(parts[1]);
+        byte[] salt = Hex.decode(parts[2]);
+        byte[] expected = Hex.decode(parts[3]);
+        return matches(expected, pbkdf2(rawPassword, salt, cost));
+    }
+
+    /**
+     * @return <code>true</code> when the stored hash uses the legacy scheme or fewer iterations than configured
+     */
+    public boolean upgradeEncoding(String encodedPassword) {
+        if (!isPbkdf2(encodedPassword)) {
+            return true;
+        }
+        String cost = encodedPassword.substring(PREFIX.length() + 1, encodedPassword.indexOf(SEPARATOR, PREFIX.length() + 1));
+        return Integer.parseInt(cost) < iterations;
+    }
+
+    private boolean isPbkdf2(String encodedPassword) {
+        return encodedPassword.startsWith(PREFIX + SEPARATOR);
+    }
+
+    private boolean matchesLegacy(CharSequence rawPassword, String encodedPassword) {
         byte[] digested = decode(encodedPassword);
-        byte[] salt = subArray(digested, 0, saltGenerator.getKeyLength());
+        byte[] salt = subArray(digested, 0, legacySaltGenerator.getKeyLength());
         return matches(digested, digest(rawPassword, salt));
     }
 
+    private byte[] pbkdf2(CharSequence rawPassword, byte[] salt, int cost) {
+        PBEKeySpec spec = new PBEKeySpec(rawPassword.toString().toCharArray(), concatenate(salt, secret), cost, PBKDF2_KEY_LENGTH);
+        try {
+            // factories are cheap next to the hash itself and not shared between threads
+            return SecretKeyFactory.getInstance(PBKDF2_ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("No such hashing algorithm", e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+
     /**
      * Constant time comparison to prevent against timing attacks.
      */
@@ -48,11 +114,6 @@ public class PasswordEncoder {
         return result == 0;
     }
 
-    private String encode(CharSequence rawPassword, byte[] salt) {
-        byte[] digest = digest(rawPassword, salt);
-        return new String(Hex.encode(digest));
-    }
-
     private byte[] decode(CharSequence encodedPassword) {
         return Hex.decode(encodedPassword);
     }
@@ -10,19 +10,25 @@ public class SaltGenerator {
     private static final int DEFAULT_KEY_LENGTH = 8;
 
     private final SecureRandom random;
+    private final int keyLength;
 
     public SaltGenerator() {
+        this(DEFAULT_KEY_LENGTH);
+    }
+
+    public SaltGenerator(int keyLength) {
         this.random = new SecureRandom();
+        this.keyLength = keyLength;
     }
 
     public byte[] generateKey() {
-        byte[] bytes = new byte[DEFAULT_KEY_LENGTH];
+        byte[] bytes = new byte[keyLength];
         random.nextBytes(bytes);
         return bytes;
     }
 
 
     public int getKeyLength() {
-        return DEFAULT_KEY_LENGTH;
+        return keyLength;
     }
 }
@@ -39,6 +39,10 @@ public class AuthTokenDAO extends AbstractDAO<AuthToken> {
         return list(criteria);
     }
 
+    public void delete(AuthToken authToken) {
+        currentSession().delete(authToken);
+    }
+
     private String newToken() {
         return UUID.randomUUID().toString();
     }
@@ -1,13 +1,16 @@
 package io.budgetapp.dao;
 
 import io.budgetapp.model.Budget;
+import io.budgetapp.model.BudgetType;
+import io.budgetapp.model.Category;
+import io.budgetapp.model.CategoryType;
+import io.budgetapp.model.CategoryUsage;
+import io.budgetapp.model.MonthlyUsage;
 import io.budgetapp.util.Util;
 import io.budgetapp.application.AccessDeniedException;
 import io.budgetapp.application.NotFoundException;
-import io.budgetapp.checker.ConsistencyChecker;
-import io.budgetapp.configuration.AppConfiguration;
-import io.budgetapp.database.MySqlConnector;
-import io.budgetapp.database.PostgresConnector;
+import io.budgetapp.database.ShadowReader;
+import io.budgetapp.database.ShadowWriter;
 import io.budgetapp.model.User;
 import io.dropwizard.hibernate.AbstractDAO;
 import org.hibernate.Criteria;
@@ -16,21 +19,24 @@ import org.hibernate.SessionFactory;
 import org.hibernate.criterion.Order;
 import org.hibernate.criterion.Projections;
 import org.hibernate.criterion.Restrictions;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.id.IdentifierGenerator;
 import org.hibernate.query.Query;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.sql.PreparedStatement;
-import java.sql.SQLException;
-import java.sql.SQLIntegrityConstraintViolationException;
-import java.sql.Statement;
 import java.sql.Timestamp;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.stream.Collectors;
 
 /**
  *
@@ -39,11 +45,26 @@ public class BudgetDAO extends AbstractDAO<Budget> {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(BudgetDAO.class);
 
-    private final AppConfiguration configuration;
+    private static final String SHADOW_INSERT = "INSERT INTO budgets (id, name, projected, actual, period_on, created_at, user_id, category_id, type_id)"
+            + " VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)"
+            + " ON DUPLICATE KEY UPDATE id = id";
 
-    public BudgetDAO(SessionFactory sessionFactory, AppConfiguration configuration) {
+    // users already having budgets in the target period are left alone
+    private static final String FIND_BUDGETS_TO_COPY = "SELECT b.name, b.projected, b.user_id, b.category_id, b.type_id"
+            + " FROM budgets b WHERE b.user_id IN (:userIds) AND b.period_on = :from"
+            + " AND NOT EXISTS (SELECT 1 FROM budgets t WHERE t.user_id = b.user_id AND t.period_on = :to)"
+            + " ORDER BY b.id";
+
+    private static final String BATCH_INSERT = "INSERT INTO budgets (id, name, projected, actual, period_on, user_id, category_id, type_id, created_at)"
+            + " VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final ShadowWriter shadowWriter;
+    private final ShadowReader shadowReader;
+
+    public BudgetDAO(SessionFactory sessionFactory, ShadowWriter shadowWriter, ShadowReader shadowReader) {
         super(sessionFactory);
-        this.configuration = configuration;
+        this.shadowWriter = shadowWriter;
+        this.shadowReader = shadowReader;
     }
 
     /**
@@ -54,63 +75,76 @@ public class BudgetDAO extends AbstractDAO<Budget> {
      */
     public Budget addBudget(User user, Budget budget) {
         LOGGER.debug("User {} add budget {}", user, budget);
-        
-        Budget newBudget = new Budget();
-        
+
         if(budget.getPeriod() == null) {
             budget.setPeriod(Util.currentYearMonth());
         }
         budget.setUser(user);
-        
-        //***BEGIN Shadow write to mysql***
-        if(MySqlConnector.getInstance().isUseMySql()) {
-        	try {
-
-    			//Disable foreign key checks
-    			Statement disableFKChecks = MySqlConnector.getInstance().getMySqlConnection().createStatement();
-    			disableFKChecks.executeQuery("SET FOREIGN_KEY_CHECKS=0");
-
-    			// Inserting data
-    			String query = " INSERT INTO budgets (name, projected, actual, period_on, created_at, user_id, category_id, type_id)"
-    					+ " VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
-    			PreparedStatement preparedStmt = MySqlConnector.getInstance().getMySqlConnection().prepareStatement(query);
-    			preparedStmt.setString(1, budget.getName());
-    			preparedStmt.setDouble(2, budget.getProjected());
-    			preparedStmt.setDouble(3, budget.getActual());
-    			preparedStmt.setDate(4, (java.sql.Date) budget.getPeriod());
-    			preparedStmt.setTimestamp(5, new Timestamp(new java.util.Date().getTime()));
-    			preparedStmt.setLong(6, user.getId());
-    			preparedStmt.setLong(7, budget.getCategory().getId());
-    			preparedStmt.setLong(8, budget.getBudgetType().getId());
-
-    			try {
-    				preparedStmt.execute();
-    				//Check consistency
-    				ConsistencyChecker checker = new ConsistencyChecker(PostgresConnector.getInstance().getPostgresConnection(), MySqlConnector.getInstance().getMySqlConnection());
-    				checker.checkBudgets();
-    				if(checker.getNumInconsistencies() > 100) {
-    					newBudget = persist(budget);
-    				}
-    			}
-    			catch (SQLIntegrityConstraintViolationException  e) {
-    				LOGGER.error("budgets table insertion failed");
-    				e.printStackTrace();
-    			}
-
-    			//Enable foreign key checks
-    			Statement enableFKChecks = MySqlConnector.getInstance().getMySqlConnection().createStatement();
-    			enableFKChecks.executeQuery("SET FOREIGN_KEY_CHECKS=1");
-
-    		} catch (SQLException e) {
-    			e.printStackTrace();
-    		}
-        }
-        
-        //***END Shadow write to mysql***
-        
+        budget.setCreatedAt(new Timestamp(System.currentTimeMillis()));
+        Budget newBudget = persist(budget);
+
+        shadowWriter.enqueue("budgets", SHADOW_INSERT,
+                newBudget.getId(),
+                newBudget.getName(),
+                newBudget.getProjected(),
+                newBudget.getActual(),
+                new java.sql.Date(newBudget.getPeriod().getTime()),
+                new Timestamp(newBudget.getCreatedAt().getTime()),
+                user.getId(),
+                newBudget.getCategory().getId(),
+                newBudget.getBudgetType().getId());
+
         return newBudget;
     }
 
+    /**
+     * insert budgets with one JDBC batch, bypassing the session. The inserted entities are
+     * not attached to the session, ids come from the same pooled generator as persisted ones.
+     * @param budgets new budgets with user, period, category and budget type set
+     */
+    public void insertBudgets(List<Budget> budgets) {
+        if(budgets.isEmpty()) {
+            return;
+        }
+        SessionImplementor session = (SessionImplementor) currentSession();
+        IdentifierGenerator generator = session.getFactory().getMetamodel().entityPersister(Budget.class).getIdentifierGenerator();
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        for (Budget budget : budgets) {
+            budget.setId((Long) generator.generate(session, budget));
+            budget.setCreatedAt(now);
+        }
+        session.doWork(connection -> {
+            try(PreparedStatement insert = connection.prepareStatement(BATCH_INSERT)) {
+                for (Budget budget : budgets) {
+                    insert.setLong(1, budget.getId());
+                    insert.setString(2, budget.getName());
+                    insert.setDouble(3, budget.getProjected());
+                    insert.setDouble(4, budget.getActual());
+                    insert.setDate(5, new java.sql.Date(budget.getPeriod().getTime()));
+                    insert.setLong(6, budget.getUser().getId());
+                    insert.setLong(7, budget.getCategory().getId());
+                    insert.setLong(8, budget.getBudgetType().getId());
+                    insert.setTimestamp(9, now);
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+            }
+        });
+
+        for (Budget budget : budgets) {
+            shadowWriter.enqueue("budgets", SHADOW_INSERT,
+                    budget.getId(),
+                    budget.getName(),
+                    budget.getProjected(),
+                    budget.getActual(),
+                    new java.sql.Date(budget.getPeriod().getTime()),
+                    now,
+                    budget.getUser().getId(),
+                    budget.getCategory().getId(),
+                    budget.getBudgetType().getId());
+        }
+    }
+
     /**
      * find budgets for a given user for current month-year
      * @param user
@@ -139,18 +173,81 @@ public class BudgetDAO extends AbstractDAO<Budget> {
         criteria.add(Restrictions.eq("user", user));
         criteria.add(Restrictions.eq("period", yearMonth));
         criteria.addOrder(Order.asc("id"));
-        return list(criteria);
+        return shadowReader.read("findBudgets", () -> list(criteria),
+                "SELECT id, name, projected, actual, category_id, type_id FROM budgets WHERE user_id = ? AND period_on = ?", user.getId(), new java.sql.Date(yearMonth.getTime()));
     }
 
+    /**
+     * find the latest period of the user's budgets, budgets copied ahead of time are created a month before their period
+     * @param user
+     * @return
+     */
     public Date findLatestBudget(User user) {
         LOGGER.debug("Find latest budget by user {}", user);
         Criteria criteria = criteria();
         criteria.add(Restrictions.eq("user", user));
-        criteria.setProjection(Projections.max("createdAt"));
+        criteria.setProjection(Projections.max("period"));
         criteria.setMaxResults(1);
         return (Date)criteria.uniqueResult();
     }
 
+    /**
+     * copy the budgets of the given users from one period into another, projected amounts are kept and
+     * actuals start at 0. Users already having budgets in the target period are skipped. The copies are
+     * written with {@link #insertBudgets} so their ids come from the pooled generator.
+     * The check does not stop two transactions copying concurrently, callers hold the users' locks ({@link UserDAO#lockUsers}).
+     * @param userIds owners
+     * @param from source period
+     * @param to target period
+     * @return number of budgets created
+     */
+    public int copyBudgets(Collection<Long> userIds, Date from, Date to) {
+        if(userIds.isEmpty()) {
+            return 0;
+        }
+        LOGGER.debug("Copy budgets of {} users from {} to {}", userIds.size(), from, to);
+        List<Object[]> rows = currentSession()
+                .createNativeQuery(FIND_BUDGETS_TO_COPY)
+                .addSynchronizedQuerySpace("budgets")
+                .setParameterList("userIds", userIds)
+                .setParameter("from", new java.sql.Date(from.getTime()))
+                .setParameter("to", new java.sql.Date(to.getTime()))
+                .list();
+
+        List<Budget> budgets = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            Budget budget = new Budget();
+            budget.setName((String) row[0]);
+            budget.setProjected(((Number) row[1]).doubleValue());
+            budget.setPeriod(to);
+            budget.setUser(new User(((Number) row[2]).longValue()));
+            budget.setCategory(new Category(((Number) row[3]).longValue()));
+            budget.setBudgetType(new BudgetType(((Number) row[4]).longValue()));
+            budgets.add(budget);
+        }
+        insertBudgets(budgets);
+        return budgets.size();
+    }
+
+    /**
+     * find users active in the source period, having recorded an actual amount on any budget, but no budget
+     * in the target period yet
+     * @param from source period
+     * @param to target period
+     * @param limit maximum users returned
+     * @return user ids, lowest first
+     */
+    public List<Long> findUsersToCopy(Date from, Date to, int limit) {
+        return currentSession()
+                .createQuery("SELECT DISTINCT b.user.id FROM Budget b WHERE b.period = :from AND b.actual <> 0 " +
+                        "AND NOT EXISTS (SELECT t.id FROM Budget t WHERE t.user = b.user AND t.period = :to) " +
+                        "ORDER BY b.user.id", Long.class)
+                .setParameter("from", from)
+                .setParameter("to", to)
+                .setMaxResults(limit)
+                .list();
+    }
+
     /**
      * Throws an error if the budget does not belong to the user
      * @param user
@@ -221,9 +318,6 @@ public class BudgetDAO extends AbstractDAO<Budget> {
     public void delete(Budget budget) {
         currentSession().delete(budget);
     }
-    public Map<String, List<Budget>> findDefaultBudgets() {
-        return configuration.getBudgets();
-    }
 
     public List<Budget> findByRange(User user, int startMonth, int startYear, int endMonth, int endYear) {
         Date start = Util.yearMonthDate(startMonth, startYear);
@@ -237,6 +331,47 @@ public class BudgetDAO extends AbstractDAO<Budget> {
         return list(query);
     }
 
+    /**
+     * sum the actual amount per category of the given type in one month, computed by the database
+     */
+    public List<CategoryUsage> findUsageByCategory(User user, int month, int year, CategoryType type) {
+        Query<Object[]> query = currentSession().createQuery(
+                "SELECT c.id, c.name, SUM(b.actual) FROM Budget b JOIN b.category c " +
+                "WHERE b.user = :user AND b.period = :period AND c.type = :type " +
+                "GROUP BY c.id, c.name", Object[].class);
+        query
+                .setParameter("user", user)
+                .setParameter("period", Util.yearMonthDate(month, year))
+                .setParameter("type", type);
+        return query.list()
+                .stream()
+                .map(row -> new CategoryUsage((Long) row[0], (String) row[1], ((Number) row[2]).doubleValue()))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * budget, spending and refund totals per month in the range, computed by the database
+     */
+    public List<MonthlyUsage> findMonthlyUsage(User user, int startMonth, int startYear, int endMonth, int endYear) {
+        Query<Object[]> query = currentSession().createQuery(
+                "SELECT b.period, " +
+                "SUM(CASE WHEN c.type = :expenditure THEN b.projected ELSE 0 END), " +
+                "SUM(CASE WHEN c.type = :expenditure AND b.actual > 0 THEN b.actual ELSE 0 END), " +
+                "SUM(CASE WHEN b.actual < 0 THEN b.actual ELSE 0 END) " +
+                "FROM Budget b JOIN b.category c " +
+                "WHERE b.user = :user AND b.period BETWEEN :start AND :end " +
+                "GROUP BY b.period ORDER BY b.period", Object[].class);
+        query
+                .setParameter("expenditure", CategoryType.EXPENDITURE)
+                .setParameter("user", user)
+                .setParameter("start", Util.yearMonthDate(startMonth, startYear))
+                .setParameter("end", Util.yearMonthDate(endMonth, endYear));
+        return query.list()
+                .stream()
+                .map(row -> new MonthlyUsage((Date) row[0], ((Number) row[1]).doubleValue(), ((Number) row[2]).doubleValue(), ((Number) row[3]).doubleValue()))
+                .collect(Collectors.toList());
+    }
+
     public Budget findByBudgetType(Long budgetTypeId) {
         Date now = Util.currentYearMonth();
         Query<Budget> query = query("FROM Budget b WHERE b.budgetType.id = :budgetTypeId AND b.period = :period");
@@ -246,6 +381,50 @@ public class BudgetDAO extends AbstractDAO<Budget> {
         return uniqueResult(query);
     }
 
+    /**
+     * find the current period budgets of the given budget types in one query
+     * @param budgetTypeIds
+     * @return
+     */
+    public List<Budget> findByBudgetTypes(Collection<Long> budgetTypeIds) {
+        if(budgetTypeIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Query<Budget> query = query("FROM Budget b WHERE b.budgetType.id IN (:budgetTypeIds) AND b.period = :period");
+        query
+                .setParameterList("budgetTypeIds", budgetTypeIds)
+                .setParameter("period", Util.currentYearMonth());
+        return list(query);
+    }
+
+    /**
+     * add to the actual amount of budgets in the database, budgets sharing the same increment are updated by one statement
+     * @param increments budget id to the amount to add
+     */
+    public void addActuals(Map<Long, Double> increments) {
+        Map<Double, List<Long>> byIncrement = increments.entrySet()
+                .stream()
+                .collect(Collectors.groupingBy(Map.Entry::getValue, Collectors.mapping(Map.Entry::getKey, Collectors.toList())));
+        byIncrement.forEach((increment, budgetIds) ->
+                currentSession()
+                        .createQuery("UPDATE Budget b SET b.actual = b.actual + :increment WHERE b.id IN (:budgetIds)")
+                        .setParameter("increment", increment)
+                        .setParameterList("budgetIds", budgetIds)
+                        .executeUpdate());
+    }
+
+    /**
+     * overwrite the actual amount of a budget, the entity does not write it on update
+     */
+    public void setActual(Budget budget, double actual) {
+        currentSession()
+                .createQuery("UPDATE Budget b SET b.actual = :actual WHERE b.id = :budgetId")
+                .setParameter("actual", actual)
+                .setParameter("budgetId", budget.getId())
+                .executeUpdate();
+        budget.setActual(actual);
+    }
+
     public List<Budget> findByUserAndCategory(User user, long categoryId) {
         Criteria criteria = userCriteria(user);
         criteria.add(Restrictions.eq("category.id", categoryId));
@@ -253,15 +432,18 @@ public class BudgetDAO extends AbstractDAO<Budget> {
         return list(criteria);
     }
 
-    public List<String> findSuggestions(User user, String q) {
-        q = q == null? "": q.toLowerCase();
-
-        Query<String> query = currentSession().createQuery("SELECT b.name FROM Budget l WHERE b.user != :user AND LOWER(b.name) LIKE :q", String.class);
-        query
-                .setParameter("user", user)
-                .setParameter("q", "%" + q + "%");
-
-        return query.list();
+    /**
+     * @return number of users having a budget of each name
+     */
+    public Map<String, Long> countUsersByName() {
+        List<Object[]> rows = currentSession()
+                .createQuery("SELECT b.name, COUNT(DISTINCT b.user) FROM Budget b GROUP BY b.name", Object[].class)
+                .list();
+        Map<String, Long> counts = new HashMap<>(rows.size());
+        for (Object[] row : rows) {
+            counts.put((String) row[0], (Long) row[1]);
+        }
+        return counts;
     }
 
     private Criteria defaultCriteria() {
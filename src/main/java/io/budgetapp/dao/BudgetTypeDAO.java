@@ -1,58 +1,76 @@
 package io.budgetapp.dao;
 
-import io.budgetapp.checker.ConsistencyChecker;
-import io.budgetapp.database.MySqlConnector;
-import io.budgetapp.database.PostgresConnector;
+import io.budgetapp.database.ShadowWriter;
 import io.budgetapp.model.BudgetType;
 import io.dropwizard.hibernate.AbstractDAO;
 
 import java.sql.PreparedStatement;
-import java.sql.SQLException;
-import java.sql.SQLIntegrityConstraintViolationException;
 import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.hibernate.SessionFactory;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.id.IdentifierGenerator;
 
 /**
  *
  */
 public class BudgetTypeDAO extends AbstractDAO<BudgetType> {
 
-    public BudgetTypeDAO(SessionFactory sessionFactory) {
+    private static final String SHADOW_INSERT = "INSERT INTO budget_types (id, created_at) VALUES (?, ?)"
+            + " ON DUPLICATE KEY UPDATE id = id";
+
+    private static final String BATCH_INSERT = "INSERT INTO budget_types (id, created_at) VALUES (?, ?)";
+
+    private final ShadowWriter shadowWriter;
+
+    public BudgetTypeDAO(SessionFactory sessionFactory, ShadowWriter shadowWriter) {
         super(sessionFactory);
+        this.shadowWriter = shadowWriter;
     }
 
     public BudgetType addBudgetType() {
-        BudgetType budgetType = new BudgetType();
-        
-        //***BEGIN Shadow write to mysql***
-        if(MySqlConnector.getInstance().isUseMySql()) {
-        	try {
-    			// Inserting data
-    			String query = " INSERT INTO budget_types (created_at) VALUES (?)";
-    			PreparedStatement preparedStmt = MySqlConnector.getInstance().getMySqlConnection().prepareStatement(query);
-    			preparedStmt.setTimestamp(1, new Timestamp(new java.util.Date().getTime()));
-
-    			try {
-    				preparedStmt.execute();
-    				//Check consistency
-    				ConsistencyChecker checker = new ConsistencyChecker(PostgresConnector.getInstance().getPostgresConnection(), MySqlConnector.getInstance().getMySqlConnection());
-    				checker.checkBudgetTypes();
-    				if(checker.getNumInconsistencies() > 100) {
-    					budgetType = persist(budgetType);
-    				}
-    			}
-    			catch (SQLIntegrityConstraintViolationException  e) {
-    				e.printStackTrace();
-    			}
-
-    		} catch (SQLException e) {
-    			e.printStackTrace();
-    		}
-            //***END Shadow write to mysql ***
-        }
-        
-        
+        BudgetType newBudgetType = new BudgetType();
+        newBudgetType.setCreatedAt(new Timestamp(System.currentTimeMillis()));
+        BudgetType budgetType = persist(newBudgetType);
+        shadowWriter.enqueue("budget_types", SHADOW_INSERT, budgetType.getId(), new Timestamp(budgetType.getCreatedAt().getTime()));
         return budgetType;
     }
+
+    /**
+     * insert budget types with one JDBC batch, bypassing the session
+     * @param count number of budget types
+     * @return new budget types, not attached to the session
+     */
+    public List<BudgetType> insertBudgetTypes(int count) {
+        List<BudgetType> budgetTypes = new ArrayList<>(count);
+        if(count == 0) {
+            return budgetTypes;
+        }
+        SessionImplementor session = (SessionImplementor) currentSession();
+        IdentifierGenerator generator = session.getFactory().getMetamodel().entityPersister(BudgetType.class).getIdentifierGenerator();
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        for (int i = 0; i < count; i++) {
+            BudgetType budgetType = new BudgetType();
+            budgetType.setId((Long) generator.generate(session, budgetType));
+            budgetType.setCreatedAt(now);
+            budgetTypes.add(budgetType);
+        }
+        session.doWork(connection -> {
+            try(PreparedStatement insert = connection.prepareStatement(BATCH_INSERT)) {
+                for (BudgetType budgetType : budgetTypes) {
+                    insert.setLong(1, budgetType.getId());
+                    insert.setTimestamp(2, now);
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+            }
+        });
+
+        for (BudgetType budgetType : budgetTypes) {
+            shadowWriter.enqueue("budget_types", SHADOW_INSERT, budgetType.getId(), now);
+        }
+        return budgetTypes;
+    }
 }
@@ -1,28 +1,25 @@
 package io.budgetapp.dao;
 
 import io.budgetapp.application.NotFoundException;
-import io.budgetapp.checker.ConsistencyChecker;
-import io.budgetapp.configuration.AppConfiguration;
-import io.budgetapp.database.MySqlConnector;
-import io.budgetapp.database.PostgresConnector;
+import io.budgetapp.database.ShadowReader;
+import io.budgetapp.database.ShadowWriter;
 import io.budgetapp.model.Category;
 import io.budgetapp.model.User;
 import org.hibernate.Criteria;
 import org.hibernate.SessionFactory;
+import org.hibernate.cache.spi.UpdateTimestampsCache;
 import org.hibernate.criterion.Order;
 import org.hibernate.criterion.Restrictions;
-import org.hibernate.query.Query;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.id.IdentifierGenerator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.sql.PreparedStatement;
-import java.sql.SQLException;
-import java.sql.SQLIntegrityConstraintViolationException;
-import java.sql.Statement;
 import java.sql.Timestamp;
-import java.util.ArrayList;
-import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  *
@@ -31,77 +28,89 @@ public class CategoryDAO extends DefaultDAO<Category> {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(CategoryDAO.class);
 
-    private final AppConfiguration configuration;
+    private static final String SHADOW_INSERT = "INSERT INTO categories (id, name, type, created_at, user_id) VALUES (?, ?, ?, ?, ?)"
+            + " ON DUPLICATE KEY UPDATE id = id";
 
-    public CategoryDAO(SessionFactory sessionFactory, AppConfiguration configuration) {
+    private static final String BATCH_INSERT = "INSERT INTO categories (id, name, type, user_id, created_at) VALUES (?, ?, ?, ?, ?)";
+
+    private final ShadowWriter shadowWriter;
+    private final ShadowReader shadowReader;
+
+    public CategoryDAO(SessionFactory sessionFactory, ShadowWriter shadowWriter, ShadowReader shadowReader) {
         super(sessionFactory);
-        this.configuration = configuration;
+        this.shadowWriter = shadowWriter;
+        this.shadowReader = shadowReader;
     }
 
     public List<Category> findCategories(User user) {
         Criteria criteria = userCriteria(user);
         criteria.addOrder(Order.desc("type"));
-        return list(criteria);
-    }
-
-    public Collection<Category> addDefaultCategories(User user) {
-        Collection<Category> categories = new ArrayList<>(configuration.getCategories().size());
-        configuration.getCategories()
-                .forEach(c -> categories.add(addCategory(user, category(c))));
-        return categories;
+        criteria.setCacheable(true);
+        return shadowReader.read("findCategories", () -> list(criteria),
+                "SELECT id, name, type FROM categories WHERE user_id = ?", user.getId());
     }
 
     public Category addCategory(User user, Category category) {
         LOGGER.debug("Add new category {}", category);
         category.setUser(user);
-        
-        Category newCategory = new Category();
-        
-        //***BEGIN Shadow write to mysql***
-        if(MySqlConnector.getInstance().isUseMySql()) {
-        	try {
-
-    			//Disable foreign key checks
-    			Statement disableFKChecks = MySqlConnector.getInstance().getMySqlConnection().createStatement();
-    			disableFKChecks.executeQuery("SET FOREIGN_KEY_CHECKS=0");
-
-    			// Inserting data
-    			String query = " INSERT INTO categories (name, type, created_at, user_id)"
-    					+ " VALUES (?, ?, ?, ?)";
-    			PreparedStatement preparedStmt = MySqlConnector.getInstance().getMySqlConnection().prepareStatement(query);
-    			preparedStmt.setString(1, category.getName());
-    			preparedStmt.setString(2, category.getType().toString());
-    			preparedStmt.setTimestamp(3, new Timestamp(new java.util.Date().getTime()));
-    			preparedStmt.setLong(4, user.getId());
-
-    			try {
-    				preparedStmt.execute();
-    				//Check consistency
-    				ConsistencyChecker checker = new ConsistencyChecker(PostgresConnector.getInstance().getPostgresConnection(), MySqlConnector.getInstance().getMySqlConnection());
-    				checker.checkCategories();
-    				if(checker.getNumInconsistencies() > 100) {
-    					newCategory = persist(category);
-    				}
-    			}
-    			catch (SQLIntegrityConstraintViolationException  e) {
-    				LOGGER.error("categories table insertion failed");
-    				e.printStackTrace();
-    			}
-
-    			//Enable foreign key checks
-    			Statement enableFKChecks = MySqlConnector.getInstance().getMySqlConnection().createStatement();
-    			enableFKChecks.executeQuery("SET FOREIGN_KEY_CHECKS=1");
-
-    		} catch (SQLException e) {
-    			e.printStackTrace();
-    		}
-            //***END Shadow write to mysql***
-        }
-        
-        
+        category.setCreatedAt(new Timestamp(System.currentTimeMillis()));
+        Category newCategory = persist(category);
+
+        shadowWriter.enqueue("categories", SHADOW_INSERT,
+                newCategory.getId(),
+                newCategory.getName(),
+                newCategory.getType().toString(),
+                new Timestamp(newCategory.getCreatedAt().getTime()),
+                user.getId());
+
         return newCategory;
     }
 
+    /**
+     * insert categories with one JDBC batch, bypassing the session. The inserted entities are
+     * not attached to the session, ids come from the same pooled generator as persisted ones.
+     * @param categories new categories
+     */
+    public void insertCategories(List<Category> categories) {
+        if(categories.isEmpty()) {
+            return;
+        }
+        SessionImplementor session = (SessionImplementor) currentSession();
+        IdentifierGenerator generator = session.getFactory().getMetamodel().entityPersister(Category.class).getIdentifierGenerator();
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        for (Category category : categories) {
+            category.setId((Long) generator.generate(session, category));
+            category.setCreatedAt(now);
+        }
+        session.doWork(connection -> {
+            try(PreparedStatement insert = connection.prepareStatement(BATCH_INSERT)) {
+                for (Category category : categories) {
+                    insert.setLong(1, category.getId());
+                    insert.setString(2, category.getName());
+                    insert.setString(3, category.getType().name());
+                    insert.setLong(4, category.getUser().getId());
+                    insert.setTimestamp(5, now);
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+            }
+        });
+        // cached findCategories results would miss rows written behind the session's back
+        UpdateTimestampsCache timestamps = session.getFactory().getCache().getUpdateTimestampsCache();
+        if(timestamps != null) {
+            timestamps.invalidate(new String[] {"categories"}, session);
+        }
+
+        for (Category category : categories) {
+            shadowWriter.enqueue("categories", SHADOW_INSERT,
+                    category.getId(),
+                    category.getName(),
+                    category.getType().toString(),
+                    now,
+                    category.getUser().getId());
+        }
+    }
+
     public Category findById(long categoryId) {
         Category category = get(categoryId);
         if(category == null) {
@@ -111,13 +120,6 @@ public class CategoryDAO extends DefaultDAO<Category> {
         return category;
     }
 
-    private Category category(Category ori) {
-        Category category = new Category();
-        category.setName(ori.getName());
-        category.setType(ori.getType());
-        return category;
-    }
-
     public Category find(User user, long categoryId) {
         Criteria criteria = userCriteria(user);
         criteria.add(Restrictions.eq("id", categoryId));
@@ -139,14 +141,17 @@ public class CategoryDAO extends DefaultDAO<Category> {
         currentSession().delete(category);
     }
 
-    public List<String> findSuggestions(User user, String q) {
-        q = q == null? "": q.toLowerCase();
-
-        Query<String> query = currentSession().createQuery("SELECT c.name FROM Category c WHERE c.user != :user AND LOWER(c.name) LIKE :q", String.class);
-        query
-                .setParameter("user", user)
-                .setParameter("q", "%" + q + "%");
-
-        return query.list();
+    /**
+     * @return number of users having a category of each name
+     */
+    public Map<String, Long> countUsersByName() {
+        List<Object[]> rows = currentSession()
+                .createQuery("SELECT c.name, COUNT(DISTINCT c.user) FROM Category c GROUP BY c.name", Object[].class)
+                .list();
+        Map<String, Long> counts = new HashMap<>(rows.size());
+        for (Object[] row : rows) {
+            counts.put((String) row[0], (Long) row[1]);
+        }
+        return counts;
     }
 }
@@ -0,0 +1,73 @@
+package io.budgetapp.dao;
+
+import io.budgetapp.model.User;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Per user, per day sum of transaction amounts in <code>daily_usage</code>, updated in the same
+ * transaction as the transactions it sums up
+ */
+public class DailyUsageDAO {
+
+    private static final String UPDATE = "UPDATE daily_usage SET total = total + :amount WHERE user_id = :userId AND usage_on = :usageOn";
+    private static final String INSERT = "INSERT INTO daily_usage (user_id, usage_on, total) VALUES (:userId, :usageOn, :amount)";
+    private static final String FIND_BY_RANGE = "SELECT usage_on, total FROM daily_usage WHERE user_id = :userId AND usage_on BETWEEN :start AND :end";
+
+    private final SessionFactory sessionFactory;
+
+    public DailyUsageDAO(SessionFactory sessionFactory) {
+        this.sessionFactory = sessionFactory;
+    }
+
+    /**
+     * add the given amounts to the user's days, days without a row yet get one
+     * @param userId owner of the transactions
+     * @param increments amount per day, negative for deleted transactions
+     */
+    public void add(Long userId, Map<LocalDate, Double> increments) {
+        Session session = sessionFactory.getCurrentSession();
+        // the query space keeps the updates from evicting every second level cache region
+        for (Map.Entry<LocalDate, Double> entry : increments.entrySet()) {
+            Date usageOn = Date.valueOf(entry.getKey());
+            int updated = session.createNativeQuery(UPDATE)
+                    .addSynchronizedQuerySpace("daily_usage")
+                    .setParameter("amount", entry.getValue())
+                    .setParameter("userId", userId)
+                    .setParameter("usageOn", usageOn)
+                    .executeUpdate();
+            if(updated == 0) {
+                // a concurrent first write for the same day fails on the primary key and is retried by the client
+                session.createNativeQuery(INSERT)
+                        .addSynchronizedQuerySpace("daily_usage")
+                        .setParameter("userId", userId)
+                        .setParameter("usageOn", usageOn)
+                        .setParameter("amount", entry.getValue())
+                        .executeUpdate();
+            }
+        }
+    }
+
+    /**
+     * @return total per day between start and end inclusive, days without transactions are absent
+     */
+    public Map<LocalDate, Double> findByRange(User user, LocalDate start, LocalDate end) {
+        @SuppressWarnings("unchecked")
+        List<Object[]> rows = sessionFactory.getCurrentSession().createNativeQuery(FIND_BY_RANGE)
+                .setParameter("userId", user.getId())
+                .setParameter("start", Date.valueOf(start))
+                .setParameter("end", Date.valueOf(end))
+                .list();
+        Map<LocalDate, Double> totals = new TreeMap<>();
+        for (Object[] row : rows) {
+            totals.put(((Date) row[0]).toLocalDate(), ((Number) row[1]).doubleValue());
+        }
+        return totals;
+    }
+}
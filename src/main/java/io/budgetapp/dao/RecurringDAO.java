@@ -1,89 +1,135 @@
 package io.budgetapp.dao;
 
-import io.budgetapp.checker.ConsistencyChecker;
-import io.budgetapp.database.MySqlConnector;
-import io.budgetapp.database.PostgresConnector;
+import io.budgetapp.database.ShadowWriter;
 import io.budgetapp.model.Recurring;
 import io.budgetapp.model.RecurringType;
 import io.budgetapp.model.User;
-import io.budgetapp.model.Recurring;
-import io.budgetapp.model.RecurringType;
-import io.budgetapp.model.User;
-import io.budgetapp.util.Util;
 import io.dropwizard.hibernate.AbstractDAO;
+import org.hibernate.Session;
 import org.hibernate.SessionFactory;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.id.IdentifierGenerator;
 
 import java.sql.PreparedStatement;
-import java.sql.SQLException;
-import java.sql.SQLIntegrityConstraintViolationException;
-import java.sql.Statement;
 import java.sql.Timestamp;
-import java.time.LocalDate;
-import java.time.temporal.ChronoField;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 /**
  *
  */
 public class RecurringDAO extends AbstractDAO<Recurring> {
 
-    public RecurringDAO(SessionFactory sessionFactory) {
+    private static final String SHADOW_INSERT = "INSERT INTO recurrings (id, amount, type, last_run_at, next_run_at, created_at, budget_type_id, remark)"
+            + " VALUES (?, ?, ?, ?, ?, ?, ?, ?)"
+            + " ON DUPLICATE KEY UPDATE id = id";
+
+    private static final String BATCH_INSERT = "INSERT INTO recurrings (id, amount, type, last_run_at, next_run_at, budget_type_id, remark, created_at)"
+            + " VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final ShadowWriter shadowWriter;
+
+    public RecurringDAO(SessionFactory sessionFactory, ShadowWriter shadowWriter) {
         super(sessionFactory);
+        this.shadowWriter = shadowWriter;
     }
 
     public Recurring addRecurring(Recurring recurring) {
-    	
-    	Recurring newRecurring = new Recurring();
-    	
-    	//***BEGIN Shadow write to mysql***
-    	if(MySqlConnector.getInstance().isUseMySql()) {
-    		try {
-
-    			//Disable foreign key checks
-    			Statement disableFKChecks = MySqlConnector.getInstance().getMySqlConnection().createStatement();
-    			disableFKChecks.executeQuery("SET FOREIGN_KEY_CHECKS=0");
-
-    			// Inserting data 
-    			String query = " INSERT INTO recurrings (amount, type, last_run_at, created_at, budget_type_id)"
-    					+ " VALUES (?, ?, ?, ?, ?)";
-    			PreparedStatement preparedStmt = MySqlConnector.getInstance().getMySqlConnection().prepareStatement(query);
-    			preparedStmt.setDouble(1, recurring.getAmount());
-    			preparedStmt.setString(2, recurring.getRecurringTypeDisplay());
-    			preparedStmt.setTimestamp(3, (Timestamp) recurring.getLastRunAt());
-    			preparedStmt.setTimestamp(4, new Timestamp(new java.util.Date().getTime()));
-    			preparedStmt.setLong(5, recurring.getBudgetType().getId());
-
-    			try {
-    				preparedStmt.execute();
-    				//Check consistency
-    				ConsistencyChecker checker = new ConsistencyChecker(PostgresConnector.getInstance().getPostgresConnection(), MySqlConnector.getInstance().getMySqlConnection());
-    				checker.checkRecurrings();
-    				if(checker.getNumInconsistencies() > 100) {
-    					newRecurring = persist(recurring);
-    				}
-    			}
-    			catch (SQLIntegrityConstraintViolationException  e) {
-    				e.printStackTrace();
-    			}
-
-    			//Enable foreign key checks
-    			Statement enableFKChecks = MySqlConnector.getInstance().getMySqlConnection().createStatement();
-    			enableFKChecks.executeQuery("SET FOREIGN_KEY_CHECKS=1");
-
-    		} catch (SQLException e) {
-    			e.printStackTrace();
-    		}
-        	//***END Shadow write to mysql***
-    	}
-    	
-    	
-        return persist(recurring);
+        recurring.setCreatedAt(new Timestamp(System.currentTimeMillis()));
+        Recurring newRecurring = persist(recurring);
+
+        shadowWriter.enqueue("recurrings", SHADOW_INSERT,
+                newRecurring.getId(),
+                newRecurring.getAmount(),
+                newRecurring.getRecurringType().name(),
+                new Timestamp(newRecurring.getLastRunAt().getTime()),
+                new Timestamp(newRecurring.getNextRunAt().getTime()),
+                new Timestamp(newRecurring.getCreatedAt().getTime()),
+                newRecurring.getBudgetType().getId(),
+                newRecurring.getRemark());
+
+        return newRecurring;
+    }
+
+    /**
+     * insert recurrings with one JDBC batch, bypassing the session. The inserted entities are
+     * not attached to the session, ids come from the same pooled generator as persisted ones.
+     * @param recurrings new recurrings
+     */
+    public void insertRecurrings(List<Recurring> recurrings) {
+        if(recurrings.isEmpty()) {
+            return;
+        }
+        SessionImplementor session = (SessionImplementor) currentSession();
+        IdentifierGenerator generator = session.getFactory().getMetamodel().entityPersister(Recurring.class).getIdentifierGenerator();
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        for (Recurring recurring : recurrings) {
+            recurring.setId((Long) generator.generate(session, recurring));
+            recurring.setCreatedAt(now);
+        }
+        session.doWork(connection -> {
+            try(PreparedStatement insert = connection.prepareStatement(BATCH_INSERT)) {
+                for (Recurring recurring : recurrings) {
+                    insert.setLong(1, recurring.getId());
+                    insert.setDouble(2, recurring.getAmount());
+                    insert.setString(3, recurring.getRecurringType().name());
+                    insert.setTimestamp(4, new Timestamp(recurring.getLastRunAt().getTime()));
+                    insert.setTimestamp(5, new Timestamp(recurring.getNextRunAt().getTime()));
+                    insert.setLong(6, recurring.getBudgetType().getId());
+                    insert.setString(7, recurring.getRemark());
+                    insert.setTimestamp(8, now);
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+            }
+        });
+
+        for (Recurring recurring : recurrings) {
+            shadowWriter.enqueue("recurrings", SHADOW_INSERT,
+                    recurring.getId(),
+                    recurring.getAmount(),
+                    recurring.getRecurringType().name(),
+                    new Timestamp(recurring.getLastRunAt().getTime()),
+                    new Timestamp(recurring.getNextRunAt().getTime()),
+                    now,
+                    recurring.getBudgetType().getId(),
+                    recurring.getRemark());
+        }
     }
 
-    public List<Recurring> findRecurrings(User user) {
-        return currentSession().createQuery("SELECT r FROM Recurring r JOIN r.budgetType budgetType WHERE budgetType IN (SELECT budget.budgetType FROM Budget budget WHERE budget.user = :user)")
+    /**
+     * find one page of the user's recurrings in id order, named after the budget of the given period
+     * in the same query. Recurrings without a budget in that period are returned without a name.
+     * @param period budget period the names are taken from
+     * @param afterId only recurrings with a greater id, 0 for the first page
+     * @param limit page size
+     * @return
+     */
+    public List<Recurring> findRecurrings(User user, Date period, long afterId, int limit) {
+        List<Object[]> rows = currentSession()
+                .createQuery("SELECT r, budget.name FROM Recurring r JOIN FETCH r.budgetType budgetType " +
+                        "LEFT JOIN Budget budget ON budget.budgetType = budgetType AND budget.period = :period " +
+                        "WHERE r.id > :afterId AND EXISTS (SELECT owner.id FROM Budget owner WHERE owner.budgetType = budgetType AND owner.user = :user) " +
+                        "ORDER BY r.id", Object[].class)
+                .setParameter("period", period)
+                .setParameter("afterId", afterId)
                 .setParameter("user", user)
+                .setMaxResults(limit)
                 .list();
+        return rows
+                .stream()
+                .map(row -> {
+                    Recurring recurring = (Recurring) row[0];
+                    recurring.setName((String) row[1]);
+                    return recurring;
+                })
+                .collect(Collectors.toList());
     }
 
     public void delete(Recurring recurring) {
@@ -103,30 +149,74 @@ public class RecurringDAO extends AbstractDAO<Recurring> {
     }
 
     public List<Recurring> findActiveRecurrings() {
-        LocalDate now = LocalDate.now();
+        return findActiveRecurrings(new Date(), 0, Integer.MAX_VALUE);
+    }
 
+    /**
+     * find recurrings due at the given time, one page in id order served by the next_run_at index
+     * @param now
+     * @param afterId only recurrings with a greater id, 0 for the first page
+     * @param limit page size
+     * @return
+     */
+    public List<Recurring> findActiveRecurrings(Date now, long afterId, int limit) {
         return currentSession()
-                .createQuery("SELECT r FROM Recurring r WHERE " +
-                        "(r.recurringType = :daily AND DAY(r.lastRunAt) = :yesterday) OR " +
-                        // last week with same day of week
-                        "(r.recurringType = :weekly AND WEEK(r.lastRunAt) = :lastWeek AND DAYOFWEEK(r.lastRunAt) = DAYOFWEEK(CURRENT_TIMESTAMP)) OR " +
-                        // last month with same day of month
-                        "(r.recurringType = :monthly AND MONTH(r.lastRunAt) = :lastMonth AND DAY(r.lastRunAt) = DAY(CURRENT_TIMESTAMP)) OR " +
-                        // last year with same month
-                        "(r.recurringType = :yearly AND YEAR(r.lastRunAt) = :lastYear AND MONTH(r.lastRunAt) = MONTH(CURRENT_TIMESTAMP)) OR " +
-                        "r.lastRunAt IS NULL")
-                .setParameter("daily", RecurringType.DAILY)
-                .setParameter("yesterday", Util.yesterday(now))
-                .setParameter("weekly", RecurringType.WEEKLY)
-                .setParameter("lastWeek", Util.lastWeek(now))
-                .setParameter("monthly", RecurringType.MONTHLY)
-                .setParameter("lastMonth", Util.lastMonth(now))
-                .setParameter("yearly", RecurringType.YEARLY)
-                .setParameter("lastYear", now.minusYears(1).getYear())
+                .createQuery("SELECT r FROM Recurring r WHERE r.nextRunAt <= :now AND r.id > :afterId ORDER BY r.id", Recurring.class)
+                .setParameter("now", now)
+                .setParameter("afterId", afterId)
+                .setMaxResults(limit)
                 .list();
     }
 
+    public long countActiveRecurrings(Date now) {
+        return currentSession()
+                .createQuery("SELECT COUNT(r) FROM Recurring r WHERE r.nextRunAt <= :now", Long.class)
+                .setParameter("now", now)
+                .uniqueResult();
+    }
+
     public void update(Recurring recurring) {
         persist(recurring);
     }
+
+    /**
+     * claim the given recurrings for a run, one statement per recurring type. Only recurrings still
+     * due are updated, one already run by a concurrent job is left out.
+     * @param recurrings
+     * @param lastRunAt time of the run, recurrings due up to this time are claimed
+     * @return ids of the recurrings claimed by this call
+     */
+    public Set<Long> updateLastRunAt(Collection<Recurring> recurrings, Date lastRunAt) {
+        if(recurrings.isEmpty()) {
+            return Collections.emptySet();
+        }
+        Map<RecurringType, List<Long>> byType = recurrings
+                .stream()
+                .collect(Collectors.groupingBy(Recurring::getRecurringType, Collectors.mapping(Recurring::getId, Collectors.toList())));
+        byType.forEach((recurringType, recurringIds) ->
+                currentSession()
+                        .createQuery("UPDATE Recurring r SET r.lastRunAt = :lastRunAt, r.nextRunAt = :nextRunAt WHERE r.id IN (:recurringIds) AND r.nextRunAt <= :lastRunAt")
+                        .setParameter("lastRunAt", lastRunAt)
+                        .setParameter("nextRunAt", recurringType.nextRunAt(lastRunAt))
+                        .setParameterList("recurringIds", recurringIds)
+                        .executeUpdate());
+        // the update count does not say which rows were claimed, they carry this run's time now
+        return new HashSet<>(currentSession()
+                .createQuery("SELECT r.id FROM Recurring r WHERE r.id IN (:recurringIds) AND r.lastRunAt = :lastRunAt", Long.class)
+                .setParameterList("recurringIds", recurrings.stream().map(Recurring::getId).collect(Collectors.toList()))
+                .setParameter("lastRunAt", lastRunAt)
+                .list());
+    }
+
+    /**
+     * commit the work done so far and continue in a new transaction of the same session,
+     * lets long running jobs commit in chunks
+     */
+    public void commit() {
+        Session session = currentSession();
+        session.flush();
+        session.getTransaction().commit();
+        session.clear();
+        session.beginTransaction();
+    }
 }
@@ -1,30 +1,33 @@
 package io.budgetapp.dao;
 
 import io.budgetapp.application.NotFoundException;
-import io.budgetapp.checker.ConsistencyChecker;
-import io.budgetapp.database.MySqlConnector;
-import io.budgetapp.database.PostgresConnector;
+import io.budgetapp.database.ShadowReader;
+import io.budgetapp.database.ShadowWriter;
 import io.budgetapp.model.Transaction;
 import io.budgetapp.model.User;
 import io.budgetapp.model.form.report.SearchFilter;
 import io.dropwizard.hibernate.AbstractDAO;
 import org.hibernate.Criteria;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.hibernate.criterion.Order;
 import org.hibernate.criterion.Restrictions;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.id.IdentifierGenerator;
 import org.hibernate.query.Query;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.sql.PreparedStatement;
-import java.sql.SQLException;
-import java.sql.SQLIntegrityConstraintViolationException;
-import java.sql.Statement;
 import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
 
 /**
  *
@@ -33,69 +36,94 @@ public class TransactionDAO extends AbstractDAO<Transaction> {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(TransactionDAO.class);
 
-    public TransactionDAO(SessionFactory sessionFactory) {
+    private static final String SHADOW_INSERT = "INSERT INTO transactions (id, name, amount, remark, auto, transaction_on, created_at, budget_id, recurring_id)"
+            + " VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)"
+            + " ON DUPLICATE KEY UPDATE id = id";
+
+    private static final String BATCH_INSERT = "INSERT INTO transactions (id, name, amount, remark, auto, transaction_on, budget_id, recurring_id, created_at)"
+            + " VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final SessionFactory sessionFactory;
+    private final ShadowWriter shadowWriter;
+    private final ShadowReader shadowReader;
+
+    public TransactionDAO(SessionFactory sessionFactory, ShadowWriter shadowWriter, ShadowReader shadowReader) {
         super(sessionFactory);
+        this.sessionFactory = sessionFactory;
+        this.shadowWriter = shadowWriter;
+        this.shadowReader = shadowReader;
     }
 
     public Transaction addTransaction(Transaction transaction) {
         LOGGER.debug("Add transaction {}", transaction);
-        
-        Transaction newTransaction = new Transaction();
-        
-        //***BEGIN Shadow write to mysql***
-        if(MySqlConnector.getInstance().isUseMySql()) {
-        	try {
-
-    			//Disable foreign key checks
-    			Statement disableFKChecks = MySqlConnector.getInstance().getMySqlConnection().createStatement();
-    			disableFKChecks.executeQuery("SET FOREIGN_KEY_CHECKS=0");
-
-    			// Inserting data 
-    			String query = " INSERT INTO recurrings (name, amount, remark, auto, transaction_on, created_at, budget_id, recurring_id)"
-    					+ " VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
-    			PreparedStatement preparedStmt = MySqlConnector.getInstance().getMySqlConnection().prepareStatement(query);
-    			preparedStmt.setString(1, transaction.getName());
-    			preparedStmt.setDouble(2, transaction.getAmount());
-    			preparedStmt.setString(3, transaction.getRemark());
-    			preparedStmt.setBoolean(4, transaction.isAuto());
-    			preparedStmt.setTimestamp(5, (Timestamp) transaction.getTransactionOn());
-    			preparedStmt.setTimestamp(6,  new Timestamp(new java.util.Date().getTime()));
-    			preparedStmt.setLong(7, transaction.getBudget().getId());
-    			preparedStmt.setLong(8, transaction.getRecurring().getId());
-
-    			try {
-    				preparedStmt.execute();
-    				//Check consistency
-    				ConsistencyChecker checker = new ConsistencyChecker(PostgresConnector.getInstance().getPostgresConnection(), MySqlConnector.getInstance().getMySqlConnection());
-    				checker.checkTransactions();
-    				if(checker.getNumInconsistencies() > 100) {
-    					newTransaction = persist(transaction);
-    				}
-    			}
-    			catch (SQLIntegrityConstraintViolationException  e) {
-    				LOGGER.error("transactions table insertion failed");
-    				e.printStackTrace();
-    			}
-
-    			//Enable foreign key checks
-    			Statement enableFKChecks = MySqlConnector.getInstance().getMySqlConnection().createStatement();
-    			enableFKChecks.executeQuery("SET FOREIGN_KEY_CHECKS=1");
-
-    		} catch (SQLException e) {
-    			e.printStackTrace();
-    		}
-            //***END Shadow write to mysql***
-        }
-        
-        
+
+        transaction.setCreatedAt(new Timestamp(System.currentTimeMillis()));
+        Transaction newTransaction = persist(transaction);
+
+        shadowWriter.enqueue("transactions", SHADOW_INSERT,
+                newTransaction.getId(),
+                newTransaction.getName(),
+                newTransaction.getAmount(),
+                newTransaction.getRemark(),
+                newTransaction.isAuto(),
+                new Timestamp(newTransaction.getTransactionOn().getTime()),
+                new Timestamp(newTransaction.getCreatedAt().getTime()),
+                newTransaction.getBudget().getId(),
+                newTransaction.getRecurring() == null ? null : newTransaction.getRecurring().getId());
+
         return newTransaction;
     }
 
-    public List<Transaction> addTransactions(List<Transaction> transactions) {
-        return transactions
-                .stream()
-                .map(this::addTransaction)
-                .collect(Collectors.toList());
+    /**
+     * insert transactions with one JDBC batch, bypassing the session. The inserted entities are
+     * not attached to the session, ids come from the same pooled generator as persisted ones.
+     * @param transactions new transactions
+     */
+    public void insertTransactions(List<Transaction> transactions) {
+        if(transactions.isEmpty()) {
+            return;
+        }
+        SessionImplementor session = (SessionImplementor) currentSession();
+        IdentifierGenerator generator = session.getFactory().getMetamodel().entityPersister(Transaction.class).getIdentifierGenerator();
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        for (Transaction transaction : transactions) {
+            transaction.setId((Long) generator.generate(session, transaction));
+            transaction.setCreatedAt(now);
+        }
+        session.doWork(connection -> {
+            try(PreparedStatement insert = connection.prepareStatement(BATCH_INSERT)) {
+                for (Transaction transaction : transactions) {
+                    insert.setLong(1, transaction.getId());
+                    insert.setString(2, transaction.getName());
+                    insert.setDouble(3, transaction.getAmount());
+                    insert.setString(4, transaction.getRemark());
+                    insert.setBoolean(5, transaction.isAuto());
+                    insert.setTimestamp(6, new Timestamp(transaction.getTransactionOn().getTime()));
+                    insert.setLong(7, transaction.getBudget().getId());
+                    if(transaction.getRecurring() == null) {
+                        insert.setNull(8, Types.BIGINT);
+                    } else {
+                        insert.setLong(8, transaction.getRecurring().getId());
+                    }
+                    insert.setTimestamp(9, now);
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+            }
+        });
+
+        for (Transaction transaction : transactions) {
+            shadowWriter.enqueue("transactions", SHADOW_INSERT,
+                    transaction.getId(),
+                    transaction.getName(),
+                    transaction.getAmount(),
+                    transaction.getRemark(),
+                    transaction.isAuto(),
+                    new Timestamp(transaction.getTransactionOn().getTime()),
+                    now,
+                    transaction.getBudget().getId(),
+                    transaction.getRecurring() == null ? null : transaction.getRecurring().getId());
+        }
     }
 
     public List<Transaction> find(User user, Integer limit) {
@@ -145,36 +173,118 @@ public class TransactionDAO extends AbstractDAO<Transaction> {
                 .setParameter("start", start)
                 .setParameter("end", end);
 
-        return list(query);
+        return shadowReader.read("findByRange", () -> list(query),
+                "SELECT t.id, t.name, t.amount, t.remark, t.auto, t.transaction_on, t.budget_id, t.recurring_id FROM transactions t JOIN budgets b ON b.id = t.budget_id WHERE b.user_id = ? AND t.transaction_on BETWEEN ? AND ?",
+                user.getId(), new Timestamp(start.getTime()), new Timestamp(end.getTime()));
     }
 
     public List<Transaction> findTransactions(User user, SearchFilter filter) {
-        Criteria criteria = defaultCriteria();
+        // same filter for the shadow read
+        StringBuilder sql = new StringBuilder("SELECT t.id, t.name, t.amount, t.remark, t.auto, t.transaction_on, t.budget_id, t.recurring_id FROM transactions t JOIN budgets b ON b.id = t.budget_id WHERE b.user_id = ?");
+        List<Object> parameters = new ArrayList<>();
+        Criteria criteria = searchCriteria(currentSession(), user, filter, sql, parameters);
+
+        if(filter.getLimit() != null) {
+            criteria.setMaxResults(filter.getLimit());
+            sql.append(" ORDER BY t.transaction_on DESC, t.id DESC LIMIT ?");
+            parameters.add(filter.getLimit());
+        }
+
+        return shadowReader.read("findTransactions", () -> list(criteria), sql.toString(), parameters.toArray());
+    }
+
+    /**
+     * hand every matching transaction to the consumer without holding the result in memory. Runs
+     * in its own read-only session since it is used while the response is written, after the
+     * request's unit of work has ended.
+     * @param fetchSize rows fetched per round trip, the persistence context is cleared as often
+     */
+    public void scrollTransactions(User user, SearchFilter filter, int fetchSize, Consumer<Transaction> consumer) {
+        try(Session session = sessionFactory.openSession()) {
+            session.setDefaultReadOnly(true);
+            // Postgres only streams through a cursor inside a transaction
+            org.hibernate.Transaction transaction = session.beginTransaction();
+            try {
+                Criteria criteria = searchCriteria(session, user, filter, new StringBuilder(), new ArrayList<>());
+                criteria.setFetchSize(fetchSize);
+                if(filter.getLimit() != null) {
+                    criteria.setMaxResults(filter.getLimit());
+                }
+                try(ScrollableResults results = criteria.scroll(ScrollMode.FORWARD_ONLY)) {
+                    int count = 0;
+                    while(results.next()) {
+                        consumer.accept((Transaction) results.get(0));
+                        if(++count % fetchSize == 0) {
+                            session.clear();
+                        }
+                    }
+                }
+            } finally {
+                transaction.rollback();
+            }
+        }
+    }
+
+    private Criteria searchCriteria(Session session, User user, SearchFilter filter, StringBuilder sql, List<Object> parameters) {
+        Criteria criteria = session.createCriteria(Transaction.class, "t");
+        criteria.addOrder(Order.desc("transactionOn"));
+        criteria.addOrder(Order.desc("id"));
         criteria.createAlias("t.budget", "budget");
 
+        parameters.add(user.getId());
+
         criteria.add(Restrictions.eq("budget.user", user));
 
         if(filter.isAmountRange()) {
             criteria.add(Restrictions.between("amount", filter.getMinAmount(), filter.getMaxAmount()));
+            sql.append(" AND t.amount BETWEEN ? AND ?");
+            parameters.add(filter.getMinAmount());
+            parameters.add(filter.getMaxAmount());
         } else if(filter.getMinAmount() != null) {
             criteria.add(Restrictions.ge("amount", filter.getMinAmount()));
+            sql.append(" AND t.amount >= ?");
+            parameters.add(filter.getMinAmount());
         } else if(filter.getMaxAmount() != null) {
             criteria.add(Restrictions.le("amount", filter.getMaxAmount()));
+            sql.append(" AND t.amount <= ?");
+            parameters.add(filter.getMaxAmount());
         }
 
         if(filter.isDateRange()) {
             criteria.add(Restrictions.between("transactionOn", filter.getStartOn(), filter.getEndOn()));
+            sql.append(" AND t.transaction_on BETWEEN ? AND ?");
+            parameters.add(new Timestamp(filter.getStartOn().getTime()));
+            parameters.add(new Timestamp(filter.getEndOn().getTime()));
         } else if(filter.getStartOn() != null) {
             criteria.add(Restrictions.ge("transactionOn", filter.getStartOn()));
+            sql.append(" AND t.transaction_on >= ?");
+            parameters.add(new Timestamp(filter.getStartOn().getTime()));
         } else if(filter.getEndOn() != null) {
             criteria.add(Restrictions.le("transactionOn", filter.getEndOn()));
+            sql.append(" AND t.transaction_on <= ?");
+            parameters.add(new Timestamp(filter.getEndOn().getTime()));
         }
 
         if(Boolean.TRUE.equals(filter.getAuto())) {
             criteria.add(Restrictions.eq("auto", Boolean.TRUE));
+            sql.append(" AND t.auto = TRUE");
         }
 
-        return list(criteria);
+        // keyset cursor, matches the transaction_on desc, id desc order
+        if(filter.isAfter()) {
+            criteria.add(Restrictions.or(
+                    Restrictions.lt("transactionOn", filter.getAfterTransactionOn()),
+                    Restrictions.and(
+                            Restrictions.eq("transactionOn", filter.getAfterTransactionOn()),
+                            Restrictions.lt("id", filter.getAfterId()))));
+            Timestamp afterTransactionOn = new Timestamp(filter.getAfterTransactionOn().getTime());
+            sql.append(" AND (t.transaction_on < ? OR (t.transaction_on = ? AND t.id < ?))");
+            parameters.add(afterTransactionOn);
+            parameters.add(afterTransactionOn);
+            parameters.add(filter.getAfterId());
+        }
+
+        return criteria;
     }
 
 
@@ -1,24 +1,24 @@
 package io.budgetapp.dao;
 
 import io.budgetapp.application.NotFoundException;
-import io.budgetapp.checker.ConsistencyChecker;
-import io.budgetapp.database.MySqlConnector;
-import io.budgetapp.database.PostgresConnector;
+import io.budgetapp.database.ShadowWriter;
 import io.budgetapp.model.User;
-import io.budgetapp.model.form.SignUpForm;
 import io.dropwizard.hibernate.AbstractDAO;
 import org.hibernate.Criteria;
 import org.hibernate.SessionFactory;
 import org.hibernate.criterion.Restrictions;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.id.IdentifierGenerator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.sql.PreparedStatement;
-import java.sql.SQLException;
-import java.sql.SQLIntegrityConstraintViolationException;
 import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 /**
  *
@@ -27,8 +27,16 @@ public class UserDAO extends AbstractDAO<User> {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(UserDAO.class);
 
-    public UserDAO(SessionFactory sessionFactory) {
+    private static final String SHADOW_INSERT = "INSERT INTO users (id, username, password, created_at) VALUES (?, ?, ?, ?)"
+            + " ON DUPLICATE KEY UPDATE id = id";
+
+    private static final String BATCH_INSERT = "INSERT INTO users (id, username, password, name, created_at) VALUES (?, ?, ?, ?, ?)";
+
+    private final ShadowWriter shadowWriter;
+
+    public UserDAO(SessionFactory sessionFactory, ShadowWriter shadowWriter) {
         super(sessionFactory);
+        this.shadowWriter = shadowWriter;
     }
 
     public User findById(Long userId) {
@@ -39,43 +47,72 @@ public class UserDAO extends AbstractDAO<User> {
         return user;
     }
 
-    public User add(SignUpForm signUp) {
-        LOGGER.debug("Add new user {}", signUp);
-        User user = new User();
-        user.setUsername(signUp.getUsername());
-        user.setPassword(signUp.getPassword());
-        
-        
-        //***BEGIN Shadow write to mysql***
-        if(MySqlConnector.getInstance().isUseMySql()){
-        	String query = " INSERT INTO users (username, password, created_at)"
-    				+ " VALUES (?, ?, ?)";
-            PreparedStatement preparedStmt;
-    		try {
-    			preparedStmt = MySqlConnector.getInstance().getMySqlConnection().prepareStatement(query);
-    			preparedStmt.setString(1, signUp.getUsername());
-    			preparedStmt.setString(2, signUp.getPassword());
-    			preparedStmt.setTimestamp(3,  new Timestamp(new java.util.Date().getTime()) );
-    			try {
-    				preparedStmt.execute();
-    				//Check consistency
-    				ConsistencyChecker checker = new ConsistencyChecker(PostgresConnector.getInstance().getPostgresConnection(), MySqlConnector.getInstance().getMySqlConnection());
-    				checker.checkUsers();
-    				if(checker.getNumInconsistencies() > 100) {
-    					user = persist(user); //Call the old storage too
-    				}
-    			}
-    			catch (SQLIntegrityConstraintViolationException  e) {
-    				e.printStackTrace();
-    			}
-    		} catch (SQLException e) {
-    			e.printStackTrace();
-    		}
-    		//***END Shadow write to mysql
+    /**
+     * insert users with one JDBC batch, bypassing the session. The inserted entities are
+     * not attached to the session, ids come from the same pooled generator as persisted ones.
+     * @param users new users, passwords already encoded
+     */
+    public void insertUsers(List<User> users) {
+        if(users.isEmpty()) {
+            return;
         }
-        
-		
-        return user;
+        SessionImplementor session = (SessionImplementor) currentSession();
+        IdentifierGenerator generator = session.getFactory().getMetamodel().entityPersister(User.class).getIdentifierGenerator();
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        for (User user : users) {
+            user.setId((Long) generator.generate(session, user));
+            user.setCreatedAt(now);
+        }
+        session.doWork(connection -> {
+            try(PreparedStatement insert = connection.prepareStatement(BATCH_INSERT)) {
+                for (User user : users) {
+                    insert.setLong(1, user.getId());
+                    insert.setString(2, user.getUsername());
+                    insert.setString(3, user.getPassword());
+                    insert.setString(4, user.getName());
+                    insert.setTimestamp(5, now);
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+            }
+        });
+
+        for (User user : users) {
+            shadowWriter.enqueue("users", SHADOW_INSERT,
+                    user.getId(),
+                    user.getUsername(),
+                    user.getPassword(),
+                    now);
+        }
+    }
+
+    /**
+     * @return usernames of the given ones already taken, in lower case
+     */
+    public List<String> findTakenUsernames(Collection<String> usernames) {
+        if(usernames.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<String> lowerCase = usernames.stream().map(String::toLowerCase).collect(Collectors.toList());
+        return currentSession()
+                .createQuery("SELECT lower(u.username) FROM User u WHERE lower(u.username) IN (:usernames)", String.class)
+                .setParameterList("usernames", lowerCase)
+                .list();
+    }
+
+    /**
+     * lock the rows of the given users until the transaction ends, in id order so concurrent callers cannot deadlock.
+     * Serializes writers creating a user's budgets for a month, which check for existing budgets before inserting
+     * @param userIds
+     */
+    public void lockUsers(Collection<Long> userIds) {
+        if(userIds.isEmpty()) {
+            return;
+        }
+        currentSession()
+                .createNativeQuery("SELECT id FROM users WHERE id IN (:userIds) ORDER BY id FOR UPDATE")
+                .setParameterList("userIds", userIds)
+                .list();
     }
 
     public void update(User user) {
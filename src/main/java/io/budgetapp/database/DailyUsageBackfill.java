@@ -0,0 +1,80 @@
+package io.budgetapp.database;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Rebuilds <code>daily_usage</code> from the transactions, one range of user ids per transaction.
+ * A range is replaced as a whole, so rerunning after an interruption or to correct drift is safe.
+ * Transactions written for a range while it is rebuilt can be missed, run it when traffic is low.
+ */
+public class DailyUsageBackfill {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DailyUsageBackfill.class);
+
+    private static final String DELETE = "DELETE FROM daily_usage WHERE user_id BETWEEN ? AND ?";
+    private static final String INSERT =
+            "INSERT INTO daily_usage (user_id, usage_on, total) " +
+            "SELECT b.user_id, CAST(t.transaction_on AS DATE), SUM(t.amount) " +
+            "FROM transactions t JOIN budgets b ON b.id = t.budget_id " +
+            "WHERE b.user_id BETWEEN ? AND ? " +
+            "GROUP BY b.user_id, CAST(t.transaction_on AS DATE)";
+
+    private final DataSource dataSource;
+    private final long rangeSize;
+
+    /**
+     * @param rangeSize user ids rebuilt per transaction
+     */
+    public DailyUsageBackfill(DataSource dataSource, long rangeSize) {
+        this.dataSource = dataSource;
+        this.rangeSize = rangeSize;
+    }
+
+    /**
+     * @return number of daily_usage rows written
+     */
+    public long backfill() throws SQLException {
+        long written = 0;
+        long start = System.currentTimeMillis();
+        try(Connection con = dataSource.getConnection()) {
+            long maxId = maxUserId(con);
+            con.setAutoCommit(false);
+            try(PreparedStatement delete = con.prepareStatement(DELETE);
+                PreparedStatement insert = con.prepareStatement(INSERT)) {
+                for (long from = 1; from <= maxId; from += rangeSize) {
+                    long to = from + rangeSize - 1;
+                    delete.setLong(1, from);
+                    delete.setLong(2, to);
+                    delete.executeUpdate();
+                    insert.setLong(1, from);
+                    insert.setLong(2, to);
+                    written += insert.executeUpdate();
+                    con.commit();
+                    LOGGER.info("Rebuilt daily usage of users {} to {} of {}, {} rows", from, Math.min(to, maxId), maxId, written);
+                }
+            } catch (SQLException e) {
+                con.rollback();
+                throw e;
+            } finally {
+                con.setAutoCommit(true);
+            }
+        }
+        LOGGER.info("Daily usage backfill wrote {} rows in {}ms", written, System.currentTimeMillis() - start);
+        return written;
+    }
+
+    private long maxUserId(Connection con) throws SQLException {
+        try(Statement statement = con.createStatement();
+            ResultSet rs = statement.executeQuery("SELECT MAX(id) FROM users")) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package io.budgetapp.database;
+
+import com.codahale.metrics.Meter;
+import io.budgetapp.checker.CheckpointStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Collectors;
+
+/**
+ * Bulk copies the Postgres tables into MySQL. Each table is split into id ranges copied in
+ * parallel, every range streams its rows through a server-side cursor and writes them with
+ * multi-row inserts. The last copied id of each range is checkpointed after every insert, so
+ * an interrupted run resumes without copying rows twice.
+ */
+public class ForkLifter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ForkLifter.class);
+
+    /**
+     * parents first, foreign keys are disabled anyway but partial runs stay usable
+     */
+    public static final List<String> TABLES = Collections.unmodifiableList(Arrays.asList(
+            "users", "budget_types", "categories", "budgets", "recurrings", "transactions"));
+
+    private final DataSource postgres;
+    private final DataSource mySQL;
+    private final int threads;
+    private final long rangeSize;
+    private final int batchSize;
+    private final Meter rows;
+
+    /**
+     * @param threads number of ranges copied at the same time
+     * @param rangeSize ids per range
+     * @param batchSize rows per insert statement, also the cursor fetch size
+     * @param rows marked for every row copied
+     */
+    public ForkLifter(DataSource postgres, DataSource mySQL, int threads, long rangeSize, int batchSize, Meter rows) {
+        this.postgres = postgres;
+        this.mySQL = mySQL;
+        this.threads = threads;
+        this.rangeSize = rangeSize;
+        this.batchSize = batchSize;
+        this.rows = rows;
+    }
+
+    public void forklift(List<String> tables) throws Exception {
+        ExecutorService workers = Executors.newFixedThreadPool(threads);
+        ScheduledExecutorService progress = Executors.newSingleThreadScheduledExecutor();
+        progress.scheduleAtFixedRate(() -> LOGGER.info("Copied {} rows, {} rows/s", rows.getCount(), Math.round(rows.getOneMinuteRate())), 10, 10, TimeUnit.SECONDS);
+        long start = System.currentTimeMillis();
+        try(Connection checkpointConnection = postgres.getConnection()) {
+            CheckpointStore checkpoints = new CheckpointStore(checkpointConnection);
+            for (String table : tables) {
+                forklift(table, checkpoints, workers);
+            }
+        } finally {
+            progress.shutdownNow();
+            workers.shutdownNow();
+        }
+        long took = Math.max(1, System.currentTimeMillis() - start);
+        LOGGER.info("Forklift copied {} rows in {}ms, {} rows/s", rows.getCount(), took, rows.getCount() * 1000 / took);
+    }
+
+    private void forklift(String table, CheckpointStore checkpoints, ExecutorService workers) throws Exception {
+        long[] bounds = bounds(table);
+        if(bounds == null) {
+            LOGGER.info("Forklift {}: nothing to copy", table);
+            return;
+        }
+        List<String> columns = columns(table);
+        List<Future<?>> ranges = new ArrayList<>();
+        for (long from = bounds[0] - 1; from < bounds[1]; from += rangeSize) {
+            long rangeStart = from;
+            long rangeEnd = Math.min(from + rangeSize, bounds[1]);
+            String key = "forklift." + table + "." + rangeStart;
+            long afterId;
+            synchronized (checkpoints) {
+                afterId = Math.max(rangeStart, checkpoints.load(key));
+            }
+            if(afterId >= rangeEnd) {
+                continue;
+            }
+            ranges.add(workers.submit(() -> {
+                copyRange(table, columns, afterId, rangeEnd, key, checkpoints);
+                return null;
+            }));
+        }
+        LOGGER.info("Forklift {}: ids {} to {} in {} range(s)", table, bounds[0], bounds[1], ranges.size());
+        try {
+            for (Future<?> range : ranges) {
+                range.get();
+            }
+        } catch (ExecutionException e) {
+            ranges.forEach(range -> range.cancel(true));
+            throw e;
+        }
+    }
+
+    /**
+     * copies the rows with <code>afterId &lt; id &lt;= toId</code>
+     */
+    private void copyRange(String table, List<String> columns, long afterId, long toId, String key, CheckpointStore checkpoints) throws SQLException {
+        try(Connection conPostgres = postgres.getConnection();
+            Connection conMySQL = mySQL.getConnection()) {
+            // the Postgres driver only uses a cursor inside a transaction
+            conPostgres.setAutoCommit(false);
+            conMySQL.setAutoCommit(false);
+            try(Statement statement = conMySQL.createStatement()) {
+                statement.execute("SET FOREIGN_KEY_CHECKS=0");
+            }
+            try(PreparedStatement select = conPostgres.prepareStatement(
+                    "SELECT " + String.join(", ", columns) + " FROM " + table + " WHERE id > ? AND id <= ? ORDER BY id")) {
+                select.setFetchSize(batchSize);
+                select.setLong(1, afterId);
+                select.setLong(2, toId);
+                try(ResultSet result = select.executeQuery()) {
+                    List<Object[]> batch = new ArrayList<>(batchSize);
+                    while(result.next()) {
+                        Object[] row = new Object[columns.size()];
+                        for (int i = 0; i < row.length; i++) {
+                            row[i] = result.getObject(i + 1);
+                        }
+                        batch.add(row);
+                        if(batch.size() == batchSize) {
+                            insert(conMySQL, table, columns, batch, key, checkpoints);
+                        }
+                    }
+                    insert(conMySQL, table, columns, batch, key, checkpoints);
+                }
+            } finally {
+                conPostgres.commit();
+                conPostgres.setAutoCommit(true);
+                try(Statement statement = conMySQL.createStatement()) {
+                    statement.execute("SET FOREIGN_KEY_CHECKS=1");
+                }
+                conMySQL.setAutoCommit(true);
+            }
+            synchronized (checkpoints) {
+                checkpoints.save(key, toId);
+            }
+        }
+    }
+
+    private void insert(Connection conMySQL, String table, List<String> columns, List<Object[]> batch, String key, CheckpointStore checkpoints) throws SQLException {
+        if(batch.isEmpty()) {
+            return;
+        }
+        String values = "(" + String.join(", ", Collections.nCopies(columns.size(), "?")) + ")";
+        String updates = columns.stream().map(column -> column + " = VALUES(" + column + ")").collect(Collectors.joining(", "));
+        String sql = "INSERT INTO " + table + " (" + String.join(", ", columns) + ") VALUES "
+                + String.join(", ", Collections.nCopies(batch.size(), values))
+                + " ON DUPLICATE KEY UPDATE " + updates;
+        try(PreparedStatement insert = conMySQL.prepareStatement(sql)) {
+            int index = 1;
+            for (Object[] row : batch) {
+                for (Object value : row) {
+                    insert.setObject(index++, value);
+                }
+            }
+            insert.executeUpdate();
+            conMySQL.commit();
+        } catch (SQLException e) {
+            conMySQL.rollback();
+            throw e;
+        }
+        // id is always the first column
+        long lastId = ((Number) batch.get(batch.size() - 1)[0]).longValue();
+        synchronized (checkpoints) {
+            checkpoints.save(key, lastId);
+        }
+        rows.mark(batch.size());
+        batch.clear();
+    }
+
+    /**
+     * @return {min id, max id}, <code>null</code> for an empty table
+     */
+    private long[] bounds(String table) throws SQLException {
+        try(Connection con = postgres.getConnection();
+            Statement statement = con.createStatement();
+            ResultSet result = statement.executeQuery("SELECT MIN(id), MAX(id) FROM " + table)) {
+            result.next();
+            long min = result.getLong(1);
+            return result.wasNull() ? null : new long[] {min, result.getLong(2)};
+        }
+    }
+
+    /**
+     * @return column names of the table, id first
+     */
+    private List<String> columns(String table) throws SQLException {
+        try(Connection con = postgres.getConnection();
+            Statement statement = con.createStatement();
+            ResultSet result = statement.executeQuery("SELECT * FROM " + table + " WHERE 1 = 0")) {
+            ResultSetMetaData metaData = result.getMetaData();
+            List<String> columns = new ArrayList<>();
+            columns.add("id");
+            for (int i = 1; i <= metaData.getColumnCount(); i++) {
+                if(!"id".equals(metaData.getColumnName(i))) {
+                    columns.add(metaData.getColumnName(i));
+                }
+            }
+            return columns;
+        }
+    }
+}
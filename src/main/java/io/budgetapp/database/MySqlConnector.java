@@ -1,15 +1,11 @@
 package io.budgetapp.database;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
 
-public class MySqlConnector {
+public class MySqlConnector extends PooledConnector {
 	private static MySqlConnector singleton = new MySqlConnector( );
 	private MySqlConnector() { }
-	private String host = "jdbc:mysql://localhost:3306/345BudgetApp";
-	private String username = "root";
-	private String password = "root";
 	private boolean useMySql = false; //Toggle to use MySql
    
 	public static MySqlConnector getInstance( ) {
@@ -17,7 +13,7 @@ public class MySqlConnector {
 	}
 	
 	public Connection getMySqlConnection() throws SQLException {		
-		return DriverManager.getConnection(host, username, password);
+		return connection();
 	}
 
 	public boolean isUseMySql() {
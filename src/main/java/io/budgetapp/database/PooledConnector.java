@@ -0,0 +1,53 @@
+package io.budgetapp.database;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import io.dropwizard.db.ManagedDataSource;
+import org.apache.tomcat.jdbc.pool.ConnectionPool;
+import org.apache.tomcat.jdbc.pool.DataSourceProxy;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * Hands out connections from a bounded, managed pool. Callers must close the
+ * connection they borrow so it goes back to the pool.
+ */
+abstract class PooledConnector {
+
+    private ManagedDataSource dataSource;
+    private Timer wait;
+
+    /**
+     * @param dataSource pool built from a {@link io.dropwizard.db.DataSourceFactory}, its lifecycle is managed by the caller
+     * @param metrics registry for wait time and leak metrics
+     * @param name pool name used in metric names
+     */
+    public void setDataSource(ManagedDataSource dataSource, MetricRegistry metrics, String name) {
+        this.dataSource = dataSource;
+        this.wait = metrics.timer(name(getClass(), name, "wait"));
+        if(dataSource instanceof DataSourceProxy) {
+            DataSourceProxy proxy = (DataSourceProxy) dataSource;
+            metrics.register(name(getClass(), name, "abandoned"), (Gauge<Long>) () -> {
+                ConnectionPool pool = proxy.getPool();
+                return pool == null ? 0L : pool.getRemoveAbandonedCount();
+            });
+        }
+    }
+
+    public boolean isConfigured() {
+        return dataSource != null;
+    }
+
+    protected Connection connection() throws SQLException {
+        if(dataSource == null) {
+            throw new IllegalStateException(getClass().getSimpleName() + " has no data source configured");
+        }
+        try(Timer.Context ignored = wait.time()) {
+            return dataSource.getConnection();
+        }
+    }
+}
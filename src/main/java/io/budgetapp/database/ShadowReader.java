@@ -0,0 +1,159 @@
+package io.budgetapp.database;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import io.budgetapp.configuration.ShadowReadConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * Repeats a sample of DAO reads against both stores off the request thread. The request's own
+ * Hibernate read is timed as <code>&lt;read&gt;.primary</code>. For a sampled read the same SQL runs
+ * on Postgres and on MySQL, timed as <code>&lt;read&gt;.postgres</code> and <code>&lt;read&gt;.mysql</code>,
+ * and the selected columns of both results are compared row by row. The request only ever sees
+ * the primary result.
+ */
+public class ShadowReader {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ShadowReader.class);
+
+    private final boolean enabled;
+    private final double samplePercent;
+    private final ExecutorService executor;
+    private final MetricRegistry metrics;
+
+    private final Meter matched;
+    private final Meter mismatched;
+    private final Meter failed;
+    private final Meter dropped;
+
+    public ShadowReader(ShadowReadConfiguration configuration, MetricRegistry metrics) {
+        this.enabled = configuration.isEnabled();
+        this.samplePercent = configuration.getSamplePercent();
+        this.metrics = metrics;
+
+        this.matched = metrics.meter(name(ShadowReader.class, "matched"));
+        this.mismatched = metrics.meter(name(ShadowReader.class, "mismatched"));
+        this.failed = metrics.meter(name(ShadowReader.class, "failed"));
+        this.dropped = metrics.meter(name(ShadowReader.class, "dropped"));
+
+        // shadow reads are best effort, a full queue drops them instead of slowing the request
+        this.executor = new ThreadPoolExecutor(configuration.getThreads(), configuration.getThreads(), 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(configuration.getQueueCapacity()),
+                (task, pool) -> dropped.mark());
+    }
+
+    public boolean isEnabled() {
+        return enabled && MySqlConnector.getInstance().isUseMySql();
+    }
+
+    /**
+     * @param read name of the read, used for the timers
+     * @param primary the Hibernate read
+     * @param sql query selecting the same rows from either store, the id as the first column
+     * @param parameters query parameters in order
+     * @return result of the primary read
+     */
+    public <T> List<T> read(String read, Supplier<List<T>> primary, String sql, Object... parameters) {
+        List<T> result;
+        try(Timer.Context ignored = metrics.timer(name(ShadowReader.class, read, "primary")).time()) {
+            result = primary.get();
+        }
+        if(isEnabled() && ThreadLocalRandom.current().nextDouble(100) < samplePercent) {
+            executor.execute(() -> compare(read, sql, parameters));
+        }
+        return result;
+    }
+
+    private void compare(String read, String sql, Object[] parameters) {
+        Map<Long, List<Object>> expected;
+        Map<Long, List<Object>> actual;
+        try(Connection conPostgres = PostgresConnector.getInstance().getPostgresConnection();
+            Connection conMySQL = MySqlConnector.getInstance().getMySqlConnection()) {
+            // alternate the order so neither store always runs second on a warm cache
+            if(ThreadLocalRandom.current().nextBoolean()) {
+                expected = select(conPostgres, read, "postgres", sql, parameters);
+                actual = select(conMySQL, read, "mysql", sql, parameters);
+            } else {
+                actual = select(conMySQL, read, "mysql", sql, parameters);
+                expected = select(conPostgres, read, "postgres", sql, parameters);
+            }
+        } catch (SQLException | RuntimeException e) {
+            failed.mark();
+            LOGGER.warn("Shadow read {} failed", read, e);
+            return;
+        }
+        if(expected.equals(actual)) {
+            matched.mark();
+        } else {
+            mismatched.mark();
+            LOGGER.warn("Shadow read {} mismatch: postgres returned {} row(s), mysql {}", read, expected.size(), actual.size());
+            LOGGER.debug("Shadow read {} rows postgres {} mysql {}", read, expected, actual);
+        }
+    }
+
+    /**
+     * @return selected columns by id, ties in the ORDER BY may come back in any order
+     */
+    private Map<Long, List<Object>> select(Connection con, String read, String store, String sql, Object[] parameters) throws SQLException {
+        Map<Long, List<Object>> rows = new TreeMap<>();
+        try(PreparedStatement stmt = con.prepareStatement(sql)) {
+            for (int i = 0; i < parameters.length; i++) {
+                stmt.setObject(i + 1, parameters[i]);
+            }
+            try(Timer.Context ignored = metrics.timer(name(ShadowReader.class, read, store)).time();
+                ResultSet result = stmt.executeQuery()) {
+                int columns = result.getMetaData().getColumnCount();
+                while(result.next()) {
+                    List<Object> row = new ArrayList<>(columns - 1);
+                    for (int i = 2; i <= columns; i++) {
+                        row.add(normalize(result.getObject(i)));
+                    }
+                    rows.put(result.getLong(1), row);
+                }
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * the stores map the same column to different JDBC types, MySQL also drops fractions of a second
+     */
+    private static Object normalize(Object value) {
+        if(value instanceof Boolean) {
+            return (Boolean) value ? BigDecimal.ONE : BigDecimal.ZERO;
+        }
+        if(value instanceof Number) {
+            return new BigDecimal(value.toString()).stripTrailingZeros();
+        }
+        if(value instanceof Date) {
+            return ((Date) value).getTime() / 1000;
+        }
+        return value;
+    }
+
+    public void stop() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(5, TimeUnit.SECONDS);
+    }
+}
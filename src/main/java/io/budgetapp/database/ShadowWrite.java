@@ -0,0 +1,47 @@
+package io.budgetapp.database;
+
+/**
+ * A single change record waiting to be replayed against MySQL
+ */
+public class ShadowWrite {
+
+    private final String table;
+    private final String sql;
+    private final Object[] parameters;
+    private final long enqueuedAt;
+
+    public ShadowWrite(String table, String sql, Object... parameters) {
+        this.table = table;
+        this.sql = sql;
+        this.parameters = parameters;
+        this.enqueuedAt = System.nanoTime();
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    public Object[] getParameters() {
+        return parameters;
+    }
+
+    /**
+     * @return {@link System#nanoTime()} at which the write was queued
+     */
+    public long getEnqueuedAt() {
+        return enqueuedAt;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("ShadowWrite{");
+        sb.append("table='").append(table).append('\'');
+        sb.append(", parameters=").append(parameters.length);
+        sb.append('}');
+        return sb.toString();
+    }
+}
@@ -0,0 +1,222 @@
+package io.budgetapp.database;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import io.budgetapp.configuration.ShadowWriteConfiguration;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.hibernate.context.internal.ManagedSessionContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * Replays writes made against the primary store onto MySQL without holding up the request thread.
+ * DAOs {@link #enqueue} change records onto a bounded queue and a single writer thread drains it
+ * in JDBC batches over a pooled connection. Writes made inside a unit of work are only queued once
+ * its transaction commits, a rolled back write never reaches MySQL. When the queue is full the write
+ * is dropped and counted, the consistency checker repairs it later.
+ * <p>
+ * Writes must be idempotent, inserts end with <code>ON DUPLICATE KEY UPDATE id = id</code> so a row the
+ * consistency checker already copied is kept. A batch that fails is retried one write at a time, only
+ * the writes failing again are lost.
+ */
+public class ShadowWriter implements Runnable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ShadowWriter.class);
+
+    private final SessionFactory sessionFactory;
+    private final BlockingQueue<ShadowWrite> queue;
+    private final int batchSize;
+    private final long flushIntervalMillis;
+
+    private final Histogram batchSizes;
+    private final Timer lag;
+    private final Meter written;
+    private final Meter dropped;
+    private final Meter failed;
+
+    private volatile boolean running = true;
+
+    public ShadowWriter(SessionFactory sessionFactory, ShadowWriteConfiguration configuration, MetricRegistry metrics) {
+        this.sessionFactory = sessionFactory;
+        this.queue = new ArrayBlockingQueue<>(configuration.getQueueCapacity());
+        this.batchSize = configuration.getBatchSize();
+        this.flushIntervalMillis = configuration.getFlushInterval().toMilliseconds();
+
+        metrics.register(name(ShadowWriter.class, "queue-depth"), (Gauge<Integer>) queue::size);
+        metrics.register(name(ShadowWriter.class, "queue-remaining"), (Gauge<Integer>) queue::remainingCapacity);
+        this.batchSizes = metrics.histogram(name(ShadowWriter.class, "batch-size"));
+        this.lag = metrics.timer(name(ShadowWriter.class, "lag"));
+        this.written = metrics.meter(name(ShadowWriter.class, "written"));
+        this.dropped = metrics.meter(name(ShadowWriter.class, "dropped"));
+        this.failed = metrics.meter(name(ShadowWriter.class, "failed"));
+    }
+
+    public boolean isEnabled() {
+        return MySqlConnector.getInstance().isUseMySql();
+    }
+
+    /**
+     * queue a write for MySQL once the current transaction commits, never blocks the caller
+     * @param table target table, used for logging
+     * @param sql parameterized statement
+     * @param parameters statement parameters in order, <code>null</code> allowed
+     */
+    public void enqueue(String table, String sql, Object... parameters) {
+        if(!isEnabled()) {
+            return;
+        }
+        Transaction transaction = ManagedSessionContext.hasBind(sessionFactory) ? sessionFactory.getCurrentSession().getTransaction() : null;
+        if(transaction == null || !transaction.isActive()) {
+            offer(new ShadowWrite(table, sql, parameters));
+            return;
+        }
+        transaction.registerSynchronization(new Synchronization() {
+            @Override
+            public void beforeCompletion() {
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if(status == Status.STATUS_COMMITTED) {
+                    offer(new ShadowWrite(table, sql, parameters));
+                }
+            }
+        });
+    }
+
+    private void offer(ShadowWrite write) {
+        if(!running) {
+            dropped.mark();
+            LOGGER.warn("Shadow writer stopped, dropped {}", write);
+            return;
+        }
+        if(!queue.offer(write)) {
+            dropped.mark();
+            LOGGER.warn("Shadow write queue full, dropped {}", write);
+        }
+    }
+
+    @Override
+    public void run() {
+        LOGGER.info("Shadow writer started");
+        List<ShadowWrite> batch = new ArrayList<>(batchSize);
+        while(running || !queue.isEmpty()) {
+            try {
+                ShadowWrite first = queue.poll(flushIntervalMillis, TimeUnit.MILLISECONDS);
+                if(first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            } finally {
+                batch.clear();
+            }
+        }
+        LOGGER.info("Shadow writer stopped");
+    }
+
+    /**
+     * stop accepting new work, writes queued after this are dropped and counted. Queued writes are still drained
+     */
+    public void stop() {
+        running = false;
+    }
+
+    private void flush(List<ShadowWrite> batch) {
+        batchSizes.update(batch.size());
+        try(Connection con = MySqlConnector.getInstance().getMySqlConnection()) {
+            // ids come from the primary store, parents may still be in flight
+            try(Statement statement = con.createStatement()) {
+                statement.execute("SET FOREIGN_KEY_CHECKS=0");
+                try {
+                    if(!writeAll(con, batch) && batch.size() > 1) {
+                        LOGGER.warn("Shadow write of {} record(s) failed, retrying one at a time", batch.size());
+                        for (ShadowWrite write : batch) {
+                            writeAll(con, Collections.singletonList(write));
+                        }
+                    }
+                } finally {
+                    // the connection goes back to the pool
+                    statement.execute("SET FOREIGN_KEY_CHECKS=1");
+                }
+            }
+        } catch (SQLException e) {
+            failed.mark(batch.size());
+            LOGGER.error("Shadow write of {} record(s) failed", batch.size(), e);
+        }
+    }
+
+    /**
+     * write the batch in one transaction
+     * @return <code>false</code> when the batch failed and was rolled back
+     */
+    private boolean writeAll(Connection con, List<ShadowWrite> batch) throws SQLException {
+        con.setAutoCommit(false);
+        try {
+            write(con, batch);
+            con.commit();
+        } catch (SQLException e) {
+            con.rollback();
+            if(batch.size() == 1) {
+                failed.mark();
+                LOGGER.error("Shadow write {} failed", batch.get(0), e);
+            }
+            return false;
+        } finally {
+            con.setAutoCommit(true);
+        }
+
+        long now = System.nanoTime();
+        for (ShadowWrite write : batch) {
+            lag.update(now - write.getEnqueuedAt(), TimeUnit.NANOSECONDS);
+        }
+        written.mark(batch.size());
+        return true;
+    }
+
+    private void write(Connection con, List<ShadowWrite> batch) throws SQLException {
+        // consecutive writes sharing a statement go out as one JDBC batch
+        int start = 0;
+        while(start < batch.size()) {
+            String sql = batch.get(start).getSql();
+            int end = start;
+            while(end < batch.size() && sql.equals(batch.get(end).getSql())) {
+                end++;
+            }
+            try(PreparedStatement preparedStmt = con.prepareStatement(sql)) {
+                for (ShadowWrite write : batch.subList(start, end)) {
+                    Object[] parameters = write.getParameters();
+                    for (int i = 0; i < parameters.length; i++) {
+                        preparedStmt.setObject(i + 1, parameters[i]);
+                    }
+                    preparedStmt.addBatch();
+                }
+                preparedStmt.executeBatch();
+            }
+            start = end;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package io.budgetapp.hibernate.cache;
+
+import com.google.common.cache.Cache;
+import org.hibernate.cache.CacheException;
+import org.hibernate.cache.internal.DefaultCacheKeysFactory;
+import org.hibernate.cache.spi.CacheDataDescription;
+import org.hibernate.cache.spi.EntityRegion;
+import org.hibernate.cache.spi.access.AccessType;
+import org.hibernate.cache.spi.access.EntityRegionAccessStrategy;
+import org.hibernate.cache.spi.access.SoftLock;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+
+/**
+ * Entity region with non strict read write access: writes evict the entry when they happen and
+ * again once the transaction completes, a concurrent load may briefly cache the old state.
+ * Only meant for entities that rarely change.
+ */
+public class GuavaEntityRegion extends GuavaRegion implements EntityRegion {
+
+    private final CacheDataDescription description;
+
+    GuavaEntityRegion(String name, GuavaRegionFactory regionFactory, Cache<Object, Object> cache, CacheDataDescription description) {
+        super(name, regionFactory, cache);
+        this.description = description;
+    }
+
+    @Override
+    public EntityRegionAccessStrategy buildAccessStrategy(AccessType accessType) {
+        if(accessType != AccessType.NONSTRICT_READ_WRITE && accessType != AccessType.READ_ONLY) {
+            throw new CacheException("Unsupported access type " + accessType + " for region " + getName());
+        }
+        return new Access(accessType);
+    }
+
+    @Override
+    public boolean isTransactionAware() {
+        return false;
+    }
+
+    @Override
+    public CacheDataDescription getCacheDataDescription() {
+        return description;
+    }
+
+    private class Access implements EntityRegionAccessStrategy {
+
+        private final AccessType accessType;
+
+        private Access(AccessType accessType) {
+            this.accessType = accessType;
+        }
+
+        @Override
+        public Object generateCacheKey(Object id, EntityPersister persister, SessionFactoryImplementor factory, String tenantIdentifier) {
+            return DefaultCacheKeysFactory.staticCreateEntityKey(id, persister, factory, tenantIdentifier);
+        }
+
+        @Override
+        public Object getCacheKeyId(Object cacheKey) {
+            return DefaultCacheKeysFactory.staticGetEntityId(cacheKey);
+        }
+
+        @Override
+        public EntityRegion getRegion() {
+            return GuavaEntityRegion.this;
+        }
+
+        @Override
+        public Object get(SharedSessionContractImplementor session, Object key, long txTimestamp) {
+            return cache.getIfPresent(key);
+        }
+
+        @Override
+        public boolean putFromLoad(SharedSessionContractImplementor session, Object key, Object value, long txTimestamp, Object version) {
+            return putFromLoad(session, key, value, txTimestamp, version, false);
+        }
+
+        @Override
+        public boolean putFromLoad(SharedSessionContractImplementor session, Object key, Object value, long txTimestamp, Object version, boolean minimalPutOverride) {
+            if(minimalPutOverride && cache.getIfPresent(key) != null) {
+                return false;
+            }
+            cache.put(key, value);
+            return true;
+        }
+
+        @Override
+        public boolean insert(SharedSessionContractImplementor session, Object key, Object value, Object version) {
+            // cached on first load, database defaults are not known yet
+            return false;
+        }
+
+        @Override
+        public boolean afterInsert(SharedSessionContractImplementor session, Object key, Object value, Object version) {
+            return false;
+        }
+
+        @Override
+        public boolean update(SharedSessionContractImplementor session, Object key, Object value, Object currentVersion, Object previousVersion) {
+            if(accessType == AccessType.READ_ONLY) {
+                throw new UnsupportedOperationException("Can't update read only entity in region " + getName());
+            }
+            cache.invalidate(key);
+            return false;
+        }
+
+        @Override
+        public boolean afterUpdate(SharedSessionContractImplementor session, Object key, Object value, Object currentVersion, Object previousVersion, SoftLock lock) {
+            cache.invalidate(key);
+            return false;
+        }
+
+        @Override
+        public SoftLock lockItem(SharedSessionContractImplementor session, Object key, Object version) {
+            return null;
+        }
+
+        @Override
+        public SoftLock lockRegion() {
+            return null;
+        }
+
+        @Override
+        public void unlockItem(SharedSessionContractImplementor session, Object key, SoftLock lock) {
+            cache.invalidate(key);
+        }
+
+        @Override
+        public void unlockRegion(SoftLock lock) {
+            cache.invalidateAll();
+        }
+
+        @Override
+        public void remove(SharedSessionContractImplementor session, Object key) {
+            cache.invalidate(key);
+        }
+
+        @Override
+        public void removeAll() {
+            cache.invalidateAll();
+        }
+
+        @Override
+        public void evict(Object key) {
+            cache.invalidate(key);
+        }
+
+        @Override
+        public void evictAll() {
+            cache.invalidateAll();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package io.budgetapp.hibernate.cache;
+
+import com.google.common.cache.Cache;
+import org.hibernate.cache.spi.QueryResultsRegion;
+import org.hibernate.cache.spi.TimestampsRegion;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Region backed by a Guava {@link Cache}, used as is for query results and update timestamps
+ */
+public class GuavaRegion implements QueryResultsRegion, TimestampsRegion {
+
+    private final String name;
+    private final GuavaRegionFactory regionFactory;
+    protected final Cache<Object, Object> cache;
+
+    GuavaRegion(String name, GuavaRegionFactory regionFactory, Cache<Object, Object> cache) {
+        this.name = name;
+        this.regionFactory = regionFactory;
+        this.cache = cache;
+    }
+
+    Cache<Object, Object> getCache() {
+        return cache;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Object get(SharedSessionContractImplementor session, Object key) {
+        return cache.getIfPresent(key);
+    }
+
+    @Override
+    public void put(SharedSessionContractImplementor session, Object key, Object value) {
+        cache.put(key, value);
+    }
+
+    @Override
+    public void evict(Object key) {
+        cache.invalidate(key);
+    }
+
+    @Override
+    public void evictAll() {
+        cache.invalidateAll();
+    }
+
+    @Override
+    public void destroy() {
+        cache.invalidateAll();
+    }
+
+    @Override
+    public boolean contains(Object key) {
+        return cache.getIfPresent(key) != null;
+    }
+
+    @Override
+    public long getSizeInMemory() {
+        return -1;
+    }
+
+    @Override
+    public long getElementCountInMemory() {
+        return cache.size();
+    }
+
+    @Override
+    public long getElementCountOnDisk() {
+        return 0;
+    }
+
+    // Region#toMap is declared with a raw Map
+    @Override
+    @SuppressWarnings("rawtypes")
+    public Map toMap() {
+        return new HashMap<>(cache.asMap());
+    }
+
+    @Override
+    public long nextTimestamp() {
+        return regionFactory.nextTimestamp();
+    }
+
+    @Override
+    public int getTimeout() {
+        return GuavaRegionFactory.TIMEOUT;
+    }
+}
@@ -0,0 +1,122 @@
+package io.budgetapp.hibernate.cache;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheBuilderSpec;
+import org.hibernate.boot.spi.SessionFactoryOptions;
+import org.hibernate.cache.CacheException;
+import org.hibernate.cache.spi.CacheDataDescription;
+import org.hibernate.cache.spi.CollectionRegion;
+import org.hibernate.cache.spi.EntityRegion;
+import org.hibernate.cache.spi.NaturalIdRegion;
+import org.hibernate.cache.spi.QueryResultsRegion;
+import org.hibernate.cache.spi.RegionFactory;
+import org.hibernate.cache.spi.TimestampsRegion;
+import org.hibernate.cache.spi.access.AccessType;
+
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * Second level cache regions held in bounded Guava caches on each node. Every region uses the
+ * {@link CacheBuilderSpec} of <code>hibernate.cache.guava.spec</code>, a region can override it with
+ * <code>hibernate.cache.guava.spec.&lt;region name&gt;</code>. Update timestamps are never evicted,
+ * the query cache relies on them to know which results are stale.
+ */
+public class GuavaRegionFactory implements RegionFactory {
+
+    public static final String SPEC = "hibernate.cache.guava.spec";
+    public static final String DEFAULT_SPEC = "maximumSize=10000, expireAfterWrite=10m";
+
+    // timestamps are milliseconds shifted left 12 bits, leaving room for 4096 distinct values per millisecond
+    private static final int BIN_DIGITS = 12;
+    static final int TIMEOUT = 60_000 << BIN_DIGITS;
+
+    private static final long serialVersionUID = 2931453066736361052L;
+
+    private final transient Map<String, GuavaRegion> regions = new ConcurrentHashMap<>();
+    private final AtomicLong lastTimestamp = new AtomicLong();
+    private transient Properties properties;
+
+    @Override
+    public void start(SessionFactoryOptions settings, Properties properties) {
+        this.properties = properties;
+    }
+
+    @Override
+    public void stop() {
+        regions.values().forEach(GuavaRegion::destroy);
+        regions.clear();
+    }
+
+    @Override
+    public boolean isMinimalPutsEnabledByDefault() {
+        return true;
+    }
+
+    @Override
+    public AccessType getDefaultAccessType() {
+        return AccessType.NONSTRICT_READ_WRITE;
+    }
+
+    @Override
+    public long nextTimestamp() {
+        long now = System.currentTimeMillis() << BIN_DIGITS;
+        return lastTimestamp.updateAndGet(last -> Math.max(now, last + 1));
+    }
+
+    @Override
+    public EntityRegion buildEntityRegion(String regionName, Properties properties, CacheDataDescription metadata) {
+        return register(new GuavaEntityRegion(regionName, this, build(regionName), metadata));
+    }
+
+    @Override
+    public NaturalIdRegion buildNaturalIdRegion(String regionName, Properties properties, CacheDataDescription metadata) {
+        throw new CacheException("Natural id caching is not supported, region " + regionName);
+    }
+
+    @Override
+    public CollectionRegion buildCollectionRegion(String regionName, Properties properties, CacheDataDescription metadata) {
+        throw new CacheException("Collection caching is not supported, region " + regionName);
+    }
+
+    @Override
+    public QueryResultsRegion buildQueryResultsRegion(String regionName, Properties properties) {
+        return register(new GuavaRegion(regionName, this, build(regionName)));
+    }
+
+    @Override
+    public TimestampsRegion buildTimestampsRegion(String regionName, Properties properties) {
+        return register(new GuavaRegion(regionName, this, CacheBuilder.newBuilder().recordStats().build()));
+    }
+
+    /**
+     * hits, misses, hit rate, evictions and size per region
+     */
+    public void registerMetrics(MetricRegistry metrics) {
+        regions.forEach((regionName, region) -> {
+            Cache<Object, Object> cache = region.getCache();
+            metrics.register(name(GuavaRegionFactory.class, regionName, "hits"), (Gauge<Long>) () -> cache.stats().hitCount());
+            metrics.register(name(GuavaRegionFactory.class, regionName, "misses"), (Gauge<Long>) () -> cache.stats().missCount());
+            metrics.register(name(GuavaRegionFactory.class, regionName, "hit-rate"), (Gauge<Double>) () -> cache.stats().hitRate());
+            metrics.register(name(GuavaRegionFactory.class, regionName, "evictions"), (Gauge<Long>) () -> cache.stats().evictionCount());
+            metrics.register(name(GuavaRegionFactory.class, regionName, "size"), (Gauge<Long>) cache::size);
+        });
+    }
+
+    private <T extends GuavaRegion> T register(T region) {
+        regions.put(region.getName(), region);
+        return region;
+    }
+
+    private Cache<Object, Object> build(String regionName) {
+        String spec = properties.getProperty(SPEC + "." + regionName, properties.getProperty(SPEC, DEFAULT_SPEC));
+        return CacheBuilder.from(spec).recordStats().build();
+    }
+}
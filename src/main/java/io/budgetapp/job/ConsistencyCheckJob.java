@@ -0,0 +1,141 @@
+package io.budgetapp.job;
+
+import io.budgetapp.checker.CheckpointStore;
+import io.budgetapp.checker.ConsistencyChecker;
+import io.budgetapp.configuration.ConsistencyCheckConfiguration;
+import io.budgetapp.database.MySqlConnector;
+import io.budgetapp.database.PostgresConnector;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SortedSet;
+
+/**
+ * Incremental consistency check between Postgres and MySQL. Each pass only compares
+ * rows above the per-table watermark and persists the new watermark after every window.
+ * The watermark stays behind rows younger than the shadow lag, which may still be queued for MySQL.
+ */
+public class ConsistencyCheckJob implements Runnable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConsistencyCheckJob.class);
+
+    private final int batchSize;
+    private final long shadowLagMillis;
+    private final long hashRangeIntervalMillis;
+    private final int hashRangeFanout;
+    private final int hashRangeLeafSize;
+    private final int repairBatchSize;
+    private final boolean dryRun;
+    private final JobLease lease;
+
+    private long lastHashRangeRun;
+
+    public ConsistencyCheckJob(ConsistencyCheckConfiguration configuration, JobLease lease) {
+        this.batchSize = configuration.getBatchSize();
+        this.shadowLagMillis = configuration.getShadowLag().toMilliseconds();
+        this.hashRangeIntervalMillis = configuration.getHashRangeInterval().toMilliseconds();
+        this.hashRangeFanout = configuration.getHashRangeFanout();
+        this.hashRangeLeafSize = configuration.getHashRangeLeafSize();
+        this.repairBatchSize = configuration.getRepairBatchSize();
+        this.dryRun = configuration.isDryRun();
+        this.lease = lease;
+    }
+
+    @Override
+    public void run() {
+        if(!MySqlConnector.getInstance().isUseMySql()) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        LOGGER.debug("Start {} job", getName());
+        try(Connection conCheckpoints = PostgresConnector.getInstance().getPostgresConnection();
+            Connection conPostgres = PostgresConnector.getInstance().getPostgresConnection();
+            Connection conMySQL = MySqlConnector.getInstance().getMySqlConnection()) {
+            CheckpointStore checkpoints = new CheckpointStore(conCheckpoints);
+            ConsistencyChecker checker = new ConsistencyChecker(conPostgres, conMySQL, repairBatchSize, dryRun, shadowLagMillis);
+            boolean leased = true;
+            for (Map.Entry<String, TableCheck> entry : tableChecks(checker).entrySet()) {
+                leased = leased && check(checkpoints, entry.getKey(), entry.getValue());
+            }
+            if(leased && start - lastHashRangeRun >= hashRangeIntervalMillis && checkByHashRange(checkpoints, checker)) {
+                lastHashRangeRun = start;
+            }
+            LOGGER.debug("Found {} inconsistencies, {} repair(s){}", checker.getNumInconsistencies(), checker.getNumRepairs(), dryRun ? " reported" : "");
+        } catch (SQLException | RuntimeException e) {
+            // keep the schedule alive, next pass resumes from the saved watermark
+            LOGGER.error("{} job failed", getName(), e);
+        }
+        LOGGER.debug("Complete {} job and took {}ms", getName(), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * @return <code>false</code> when the lease was lost and the check has to stop
+     */
+    private boolean check(CheckpointStore checkpoints, String table, TableCheck tableCheck) throws SQLException {
+        long afterId = checkpoints.load(table);
+        while(true) {
+            if(!renew()) {
+                return false;
+            }
+            long lastId = tableCheck.check(afterId, batchSize);
+            if(lastId == afterId) {
+                return true;
+            }
+            checkpoints.save(table, lastId);
+            afterId = lastId;
+        }
+    }
+
+    /**
+     * rows below the watermark were checked once already, this catches later updates to them
+     * @return <code>false</code> when the lease was lost and the check has to stop
+     */
+    private boolean checkByHashRange(CheckpointStore checkpoints, ConsistencyChecker checker) throws SQLException {
+        for (String table : tableChecks(checker).keySet()) {
+            if(!renew()) {
+                return false;
+            }
+            SortedSet<Long> divergent = checker.checkByHashRange(table, checkpoints.load(table), hashRangeFanout, hashRangeLeafSize);
+            if(!divergent.isEmpty()) {
+                LOGGER.warn("{} row(s) of {} differ between Postgres and MySQL, ids {} to {}", divergent.size(), table, divergent.first(), divergent.last());
+                LOGGER.debug("Divergent {} ids: {}", table, divergent);
+                checker.repair(table, divergent);
+            }
+        }
+        return true;
+    }
+
+    private boolean renew() {
+        if(lease.acquire()) {
+            return true;
+        }
+        LOGGER.warn("{} lease lost, stopping", getName());
+        return false;
+    }
+
+    /**
+     * parents before children so repaired foreign keys point at checked rows
+     */
+    private Map<String, TableCheck> tableChecks(ConsistencyChecker checker) {
+        Map<String, TableCheck> checks = new LinkedHashMap<>();
+        checks.put("users", checker::checkUsers);
+        checks.put("budget_types", checker::checkBudgetTypes);
+        checks.put("categories", checker::checkCategories);
+        checks.put("budgets", checker::checkBudgets);
+        checks.put("recurrings", checker::checkRecurrings);
+        checks.put("transactions", checker::checkTransactions);
+        return checks;
+    }
+
+    private String getName() {
+        return "Consistency check";
+    }
+
+    private interface TableCheck {
+        long check(long afterId, int limit);
+    }
+}
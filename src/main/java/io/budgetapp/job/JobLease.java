@@ -0,0 +1,91 @@
+package io.budgetapp.job;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.persistence.PersistenceException;
+import java.lang.management.ManagementFactory;
+import java.sql.Timestamp;
+import java.util.UUID;
+
+/**
+ * Database lease in <code>job_leases</code> that makes one node the leader for a job. The leader
+ * extends the lease on every run, other nodes take over once it expires. Node clocks are assumed
+ * to be in sync to well within the lease duration.
+ */
+public class JobLease {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(JobLease.class);
+
+    private final SessionFactory sessionFactory;
+    private final String name;
+    private final String owner;
+    private final long durationMillis;
+
+    public JobLease(SessionFactory sessionFactory, String name, long durationMillis) {
+        this.sessionFactory = sessionFactory;
+        this.name = name;
+        this.owner = ManagementFactory.getRuntimeMXBean().getName() + "/" + UUID.randomUUID();
+        this.durationMillis = durationMillis;
+    }
+
+    /**
+     * take or extend the lease, each call runs in its own short transaction
+     * @return <code>true</code> when this node holds the lease until the returned call plus the lease duration
+     */
+    public boolean acquire() {
+        long now = System.currentTimeMillis();
+        try(Session session = sessionFactory.openSession()) {
+            Transaction transaction = session.beginTransaction();
+            try {
+                int updated = session.createNativeQuery("UPDATE job_leases SET owner = :owner, expires_at = :expiresAt WHERE name = :name AND (owner = :owner OR expires_at < :now)")
+                        .addSynchronizedQuerySpace("job_leases")
+                        .setParameter("owner", owner)
+                        .setParameter("expiresAt", new Timestamp(now + durationMillis))
+                        .setParameter("name", name)
+                        .setParameter("now", new Timestamp(now))
+                        .executeUpdate();
+                if(updated == 0) {
+                    Number existing = (Number) session.createNativeQuery("SELECT COUNT(*) FROM job_leases WHERE name = :name")
+                            .setParameter("name", name)
+                            .uniqueResult();
+                    if(existing.intValue() == 0) {
+                        updated = session.createNativeQuery("INSERT INTO job_leases (name, owner, expires_at) VALUES (:name, :owner, :expiresAt)")
+                                .addSynchronizedQuerySpace("job_leases")
+                                .setParameter("name", name)
+                                .setParameter("owner", owner)
+                                .setParameter("expiresAt", new Timestamp(now + durationMillis))
+                                .executeUpdate();
+                    }
+                }
+                transaction.commit();
+                return updated > 0;
+            } catch (PersistenceException e) {
+                // another node inserted the lease first
+                transaction.rollback();
+                LOGGER.debug("Lease {} taken by another node", name, e);
+                return false;
+            }
+        }
+    }
+
+    /**
+     * give up the lease so another node can take over without waiting for it to expire
+     */
+    public void release() {
+        try(Session session = sessionFactory.openSession()) {
+            Transaction transaction = session.beginTransaction();
+            session.createNativeQuery("DELETE FROM job_leases WHERE name = :name AND owner = :owner")
+                    .addSynchronizedQuerySpace("job_leases")
+                    .setParameter("name", name)
+                    .setParameter("owner", owner)
+                    .executeUpdate();
+            transaction.commit();
+        } catch (PersistenceException e) {
+            LOGGER.warn("Failed to release lease {}", name, e);
+        }
+    }
+}
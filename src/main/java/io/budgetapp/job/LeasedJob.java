@@ -0,0 +1,63 @@
+package io.budgetapp.job;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * Runs a job only on the node holding its {@link JobLease} and never twice at the same time on one node.
+ * The lease is taken before the run, jobs working in chunks renew it through the same lease before
+ * every chunk and stop once renewing fails.
+ */
+public class LeasedJob implements Runnable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LeasedJob.class);
+
+    private final Runnable job;
+    private final JobLease lease;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    private final Timer duration;
+    private final Meter skipped;
+    private final Meter standby;
+
+    public LeasedJob(String name, Runnable job, JobLease lease, MetricRegistry metrics) {
+        this.job = job;
+        this.lease = lease;
+        this.duration = metrics.timer(name(LeasedJob.class, name, "duration"));
+        this.skipped = metrics.meter(name(LeasedJob.class, name, "skipped-overlap"));
+        this.standby = metrics.meter(name(LeasedJob.class, name, "standby"));
+    }
+
+    @Override
+    public void run() {
+        if(!running.compareAndSet(false, true)) {
+            skipped.mark();
+            return;
+        }
+        try {
+            if(!lease.acquire()) {
+                standby.mark();
+                return;
+            }
+            try(Timer.Context ignored = duration.time()) {
+                job.run();
+            }
+        } catch (RuntimeException e) {
+            // an exception would cancel the schedule
+            LOGGER.error("Job failed", e);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    public void release() {
+        lease.release();
+    }
+}
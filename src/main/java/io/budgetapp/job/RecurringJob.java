@@ -1,10 +1,15 @@
 package io.budgetapp.job;
 
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
 import io.budgetapp.service.FinanceService;
 import io.dropwizard.hibernate.UnitOfWork;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import static com.codahale.metrics.MetricRegistry.name;
+
 /**
  *
  */
@@ -13,9 +18,19 @@ public class RecurringJob implements Runnable {
     private static final Logger LOGGER = LoggerFactory.getLogger(RecurringJob.class);
 
     private final FinanceService financeService;
+    private final int batchSize;
+    private final JobLease lease;
+
+    private final Meter processed;
+    private volatile long backlog;
 
-    public RecurringJob(FinanceService financeService) {
+    public RecurringJob(FinanceService financeService, int batchSize, JobLease lease, MetricRegistry metrics) {
         this.financeService = financeService;
+        this.batchSize = batchSize;
+        this.lease = lease;
+        this.processed = metrics.meter(name(RecurringJob.class, "processed"));
+        // due recurrings left over by the last run, e.g. without a budget in the current period
+        metrics.register(name(RecurringJob.class, "backlog"), (Gauge<Long>) () -> backlog);
     }
 
     @UnitOfWork
@@ -23,7 +38,8 @@ public class RecurringJob implements Runnable {
     public void run() {
         long start = System.currentTimeMillis();
         LOGGER.debug("Start {} job", getName());
-        financeService.updateRecurrings();
+        processed.mark(financeService.updateRecurrings(batchSize, lease::acquire));
+        backlog = financeService.countDueRecurrings();
         LOGGER.debug("Complete {} job and took {}ms", getName(), System.currentTimeMillis() - start);
     }
 
@@ -0,0 +1,54 @@
+package io.budgetapp.job;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import io.budgetapp.service.FinanceService;
+import io.budgetapp.util.Util;
+import io.dropwizard.hibernate.UnitOfWork;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * Copies the budgets of active users into the next month once the month is less than the lead time away,
+ * so the first request of the month does not have to
+ */
+public class RolloverJob implements Runnable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RolloverJob.class);
+
+    private final FinanceService financeService;
+    private final int batchSize;
+    private final long leadTimeMillis;
+
+    private final Meter rolledOver;
+
+    public RolloverJob(FinanceService financeService, int batchSize, long leadTimeMillis, MetricRegistry metrics) {
+        this.financeService = financeService;
+        this.batchSize = batchSize;
+        this.leadTimeMillis = leadTimeMillis;
+        this.rolledOver = metrics.meter(name(RolloverJob.class, "users"));
+    }
+
+    @UnitOfWork
+    @Override
+    public void run() {
+        LocalDate nextMonth = LocalDate.now().withDayOfMonth(1).plusMonths(1);
+        if(LocalDateTime.now().plus(leadTimeMillis, ChronoUnit.MILLIS).isBefore(nextMonth.atStartOfDay())) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        LOGGER.debug("Start {} job", getName());
+        rolledOver.mark(financeService.rolloverBudgets(Util.currentYearMonth(), Util.yearMonthDate(nextMonth.getMonthValue(), nextMonth.getYear()), batchSize));
+        LOGGER.debug("Complete {} job and took {}ms", getName(), System.currentTimeMillis() - start);
+    }
+
+    private String getName() {
+        return "Rollover job";
+    }
+}
@@ -1,7 +1,8 @@
 package io.budgetapp.managed;
 
-import io.budgetapp.job.RecurringJob;
+import io.budgetapp.job.LeasedJob;
 import io.dropwizard.lifecycle.Managed;
+import io.dropwizard.util.Duration;
 
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
@@ -12,20 +13,37 @@ import java.util.concurrent.TimeUnit;
  */
 public class JobsManaged implements Managed {
 
-    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
-    private final RecurringJob recurringJob;
+    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(3);
+    private final LeasedJob recurringJob;
+    private final Duration recurringInterval;
+    private final LeasedJob rolloverJob;
+    private final Duration rolloverInterval;
+    private final LeasedJob consistencyCheckJob;
+    private final Duration consistencyCheckInterval;
 
-    public JobsManaged(RecurringJob recurringJob) {
+    public JobsManaged(LeasedJob recurringJob, Duration recurringInterval, LeasedJob rolloverJob, Duration rolloverInterval, LeasedJob consistencyCheckJob, Duration consistencyCheckInterval) {
         this.recurringJob = recurringJob;
+        this.recurringInterval = recurringInterval;
+        this.rolloverJob = rolloverJob;
+        this.rolloverInterval = rolloverInterval;
+        this.consistencyCheckJob = consistencyCheckJob;
+        this.consistencyCheckInterval = consistencyCheckInterval;
     }
 
     @Override
     public void start() throws Exception {
-        scheduler.scheduleAtFixedRate(recurringJob, 0, 10, TimeUnit.SECONDS);
+        // fixed delay, a slow run never overlaps the next one
+        scheduler.scheduleWithFixedDelay(recurringJob, 0, recurringInterval.toMilliseconds(), TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(rolloverJob, 0, rolloverInterval.toMilliseconds(), TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(consistencyCheckJob, consistencyCheckInterval.toMilliseconds(), consistencyCheckInterval.toMilliseconds(), TimeUnit.MILLISECONDS);
     }
 
     @Override
     public void stop() throws Exception {
         scheduler.shutdown();
+        scheduler.awaitTermination(30, TimeUnit.SECONDS);
+        recurringJob.release();
+        rolloverJob.release();
+        consistencyCheckJob.release();
     }
 }
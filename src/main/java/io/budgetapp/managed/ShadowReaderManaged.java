@@ -0,0 +1,26 @@
+package io.budgetapp.managed;
+
+import io.budgetapp.database.ShadowReader;
+import io.dropwizard.lifecycle.Managed;
+
+/**
+ *
+ */
+public class ShadowReaderManaged implements Managed {
+
+    private final ShadowReader shadowReader;
+
+    public ShadowReaderManaged(ShadowReader shadowReader) {
+        this.shadowReader = shadowReader;
+    }
+
+    @Override
+    public void start() throws Exception {
+
+    }
+
+    @Override
+    public void stop() throws Exception {
+        shadowReader.stop();
+    }
+}
@@ -0,0 +1,35 @@
+package io.budgetapp.managed;
+
+import io.budgetapp.database.ShadowWriter;
+import io.dropwizard.lifecycle.Managed;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ *
+ */
+public class ShadowWriterManaged implements Managed {
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final ShadowWriter shadowWriter;
+
+    public ShadowWriterManaged(ShadowWriter shadowWriter) {
+        this.shadowWriter = shadowWriter;
+    }
+
+    @Override
+    public void start() throws Exception {
+        if(shadowWriter.isEnabled()) {
+            executor.submit(shadowWriter);
+        }
+    }
+
+    @Override
+    public void stop() throws Exception {
+        shadowWriter.stop();
+        executor.shutdown();
+        executor.awaitTermination(30, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,26 @@
+package io.budgetapp.managed;
+
+import io.budgetapp.service.SuggestionService;
+import io.dropwizard.lifecycle.Managed;
+
+/**
+ *
+ */
+public class SuggestionManaged implements Managed {
+
+    private final SuggestionService suggestionService;
+
+    public SuggestionManaged(SuggestionService suggestionService) {
+        this.suggestionService = suggestionService;
+    }
+
+    @Override
+    public void start() throws Exception {
+        suggestionService.load();
+    }
+
+    @Override
+    public void stop() throws Exception {
+
+    }
+}
@@ -6,6 +6,7 @@ import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.ManyToOne;
+import javax.persistence.SequenceGenerator;
 import javax.persistence.Table;
 import javax.persistence.Temporal;
 import javax.persistence.TemporalType;
@@ -27,7 +28,8 @@ public class AuthToken implements Serializable {
     private User user;
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "auth_tokens_id_seq")
+    @SequenceGenerator(name = "auth_tokens_id_seq", sequenceName = "auth_tokens_id_seq", allocationSize = 50)
     public Long getId() {
         return id;
     }
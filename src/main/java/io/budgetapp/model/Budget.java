@@ -40,7 +40,8 @@ public class Budget implements Serializable {
     }
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "budgets_id_seq")
+    @SequenceGenerator(name = "budgets_id_seq", sequenceName = "budgets_id_seq", allocationSize = 50)
     public Long getId() {
         return id;
     }
@@ -65,6 +66,8 @@ public class Budget implements Serializable {
         this.projected = projected;
     }
 
+    // left out of entity updates, a stale entity must not overwrite concurrent BudgetDAO.addActuals
+    @Column(name = "actual", updatable = false)
     public double getActual() {
         return actual;
     }
@@ -85,7 +88,7 @@ public class Budget implements Serializable {
     }
 
     @Temporal(TemporalType.TIMESTAMP)
-    @Column(name = "created_at", insertable = false, nullable = false, updatable = false)
+    @Column(name = "created_at", nullable = false, updatable = false)
     public Date getCreatedAt() {
         return createdAt;
     }
@@ -1,5 +1,8 @@
 package io.budgetapp.model;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 import javax.persistence.*;
 import java.io.Serializable;
 import java.util.Date;
@@ -9,6 +12,8 @@ import java.util.Date;
  */
 @Entity
 @Table(name = "budget_types")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.NONSTRICT_READ_WRITE)
 public class BudgetType implements Serializable {
 
     private static final long serialVersionUID = -7580231307267509312L;
@@ -16,8 +21,16 @@ public class BudgetType implements Serializable {
     private Long id;
     private Date createdAt;
 
+    public BudgetType() {
+    }
+
+    public BudgetType(long id) {
+        this.id = id;
+    }
+
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "budget_types_id_seq")
+    @SequenceGenerator(name = "budget_types_id_seq", sequenceName = "budget_types_id_seq", allocationSize = 50)
     public Long getId() {
         return id;
     }
@@ -27,7 +40,7 @@ public class BudgetType implements Serializable {
     }
 
     @Temporal(TemporalType.TIMESTAMP)
-    @Column(name = "created_at", insertable = false, nullable = false, updatable = false)
+    @Column(name = "created_at", nullable = false, updatable = false)
     public Date getCreatedAt() {
         return createdAt;
     }
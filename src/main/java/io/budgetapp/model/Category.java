@@ -1,5 +1,7 @@
 package io.budgetapp.model;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.validator.constraints.NotEmpty;
 
 import javax.persistence.*;
@@ -12,6 +14,8 @@ import java.util.Date;
  */
 @Entity
 @Table(name = "categories")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.NONSTRICT_READ_WRITE)
 public class Category implements Serializable {
 
     private static final long serialVersionUID = -8472850956290096457L;
@@ -30,7 +34,8 @@ public class Category implements Serializable {
     }
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "categories_id_seq")
+    @SequenceGenerator(name = "categories_id_seq", sequenceName = "categories_id_seq", allocationSize = 50)
     public Long getId() {
         return id;
     }
@@ -60,7 +65,7 @@ public class Category implements Serializable {
     }
 
     @Temporal(TemporalType.TIMESTAMP)
-    @Column(name = "created_at", insertable = false, nullable = false, updatable = false)
+    @Column(name = "created_at", nullable = false, updatable = false)
     public Date getCreatedAt() {
         return createdAt;
     }
@@ -0,0 +1,33 @@
+package io.budgetapp.model;
+
+import java.io.Serializable;
+
+/**
+ * Sum of the actual amount of a category's budgets in one month
+ */
+public class CategoryUsage implements Serializable {
+
+    private static final long serialVersionUID = 5817306489320954614L;
+
+    private final long categoryId;
+    private final String name;
+    private final double actual;
+
+    public CategoryUsage(long categoryId, String name, double actual) {
+        this.categoryId = categoryId;
+        this.name = name;
+        this.actual = actual;
+    }
+
+    public long getCategoryId() {
+        return categoryId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public double getActual() {
+        return actual;
+    }
+}
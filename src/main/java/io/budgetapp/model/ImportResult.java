@@ -0,0 +1,75 @@
+package io.budgetapp.model;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Outcome of a statement import, rows with errors are skipped and the rest imported
+ */
+public class ImportResult implements Serializable {
+
+    private static final long serialVersionUID = 8018519806286437451L;
+
+    private static final int MAX_ERRORS = 1000;
+
+    private int rows;
+    private int imported;
+    private int failed;
+    private final List<RowError> errors = new ArrayList<>();
+
+    public void addRow() {
+        rows++;
+    }
+
+    public void addImported(int count) {
+        imported += count;
+    }
+
+    /**
+     * record a skipped row, only the first {@value #MAX_ERRORS} messages are kept
+     */
+    public void addError(int row, String message) {
+        failed++;
+        if(errors.size() < MAX_ERRORS) {
+            errors.add(new RowError(row, message));
+        }
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getImported() {
+        return imported;
+    }
+
+    public int getFailed() {
+        return failed;
+    }
+
+    public List<RowError> getErrors() {
+        return errors;
+    }
+
+    public static class RowError implements Serializable {
+
+        private static final long serialVersionUID = -3979140420406356223L;
+
+        private final int row;
+        private final String message;
+
+        public RowError(int row, String message) {
+            this.row = row;
+            this.message = message;
+        }
+
+        public int getRow() {
+            return row;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+    }
+}
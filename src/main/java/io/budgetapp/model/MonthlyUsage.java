@@ -0,0 +1,40 @@
+package io.budgetapp.model;
+
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * Budget totals of one month, spending and budget cover expenditure categories only
+ */
+public class MonthlyUsage implements Serializable {
+
+    private static final long serialVersionUID = -2150474869416389725L;
+
+    private final Date period;
+    private final double budget;
+    private final double spending;
+    private final double refund;
+
+    public MonthlyUsage(Date period, double budget, double spending, double refund) {
+        this.period = period;
+        this.budget = budget;
+        this.spending = spending;
+        this.refund = refund;
+    }
+
+    public Date getPeriod() {
+        return period;
+    }
+
+    public double getBudget() {
+        return budget;
+    }
+
+    public double getSpending() {
+        return spending;
+    }
+
+    public double getRefund() {
+        return refund;
+    }
+}
@@ -1,5 +1,7 @@
 package io.budgetapp.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.EnumType;
@@ -11,6 +13,7 @@ import javax.persistence.Id;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
 import javax.persistence.OneToMany;
+import javax.persistence.SequenceGenerator;
 import javax.persistence.Table;
 import javax.persistence.Temporal;
 import javax.persistence.TemporalType;
@@ -32,6 +35,7 @@ public class Recurring implements Serializable {
     private double amount;
     private RecurringType recurringType;
     private Date lastRunAt;
+    private Date nextRunAt;
     private Date createdAt;
     private BudgetType budgetType;
     private String remark;
@@ -42,7 +46,8 @@ public class Recurring implements Serializable {
     // end
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "recurrings_id_seq")
+    @SequenceGenerator(name = "recurrings_id_seq", sequenceName = "recurrings_id_seq", allocationSize = 50)
     public Long getId() {
         return id;
     }
@@ -85,8 +90,23 @@ public class Recurring implements Serializable {
         this.lastRunAt = lastRunAt;
     }
 
+    @JsonIgnore
+    @Temporal(TemporalType.TIMESTAMP)
+    @Column(name = "next_run_at", nullable = false)
+    public Date getNextRunAt() {
+        // derived on read so inserts and dirty checks see it, JPA callbacks do not run on the native session factory
+        if(recurringType != null && lastRunAt != null) {
+            return recurringType.nextRunAt(lastRunAt);
+        }
+        return nextRunAt;
+    }
+
+    public void setNextRunAt(Date nextRunAt) {
+        this.nextRunAt = nextRunAt;
+    }
+
     @Temporal(TemporalType.TIMESTAMP)
-    @Column(name = "created_at", insertable = false, nullable = false, updatable = false)
+    @Column(name = "created_at", nullable = false, updatable = false)
     public Date getCreatedAt() {
         return createdAt;
     }
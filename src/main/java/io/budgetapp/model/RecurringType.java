@@ -1,22 +1,42 @@
 package io.budgetapp.model;
 
+import java.time.LocalDate;
+import java.time.Period;
+import java.time.ZoneId;
+import java.util.Date;
+
 /**
  *
  */
 public enum RecurringType {
 
-    DAILY("Daily"),
-    WEEKLY("Weekly"),
-    MONTHLY("Monthly"),
-    YEARLY("Yearly");
+    DAILY("Daily", Period.ofDays(1)),
+    WEEKLY("Weekly", Period.ofWeeks(1)),
+    MONTHLY("Monthly", Period.ofMonths(1)),
+    YEARLY("Yearly", Period.ofYears(1));
 
     private final String display;
+    private final Period period;
 
-    RecurringType(String display) {
+    RecurringType(String display, Period period) {
         this.display = display;
+        this.period = period;
     }
 
     public String getDisplay() {
         return display;
     }
+
+    /**
+     * @param lastRunAt last run, <code>null</code> when it never ran
+     * @return start of the day one period after the last run, or now when it never ran
+     */
+    public Date nextRunAt(Date lastRunAt) {
+        if(lastRunAt == null) {
+            return new Date();
+        }
+        ZoneId zone = ZoneId.systemDefault();
+        LocalDate next = lastRunAt.toInstant().atZone(zone).toLocalDate().plus(period);
+        return Date.from(next.atStartOfDay(zone).toInstant());
+    }
 }
@@ -24,7 +24,8 @@ public class Transaction implements Serializable {
     private Recurring recurring;
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "transactions_id_seq")
+    @SequenceGenerator(name = "transactions_id_seq", sequenceName = "transactions_id_seq", allocationSize = 50)
     public Long getId() {
         return id;
     }
@@ -79,7 +80,7 @@ public class Transaction implements Serializable {
     }
 
     @Temporal(TemporalType.TIMESTAMP)
-    @Column(name = "created_at", insertable = false, nullable = false, updatable = false)
+    @Column(name = "created_at", nullable = false, updatable = false)
     public Date getCreatedAt() {
         return createdAt;
     }
@@ -0,0 +1,41 @@
+package io.budgetapp.model;
+
+import java.io.Serializable;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * One page of a transaction search, the next cursor is <code>null</code> on the last page
+ */
+public class TransactionPage implements Serializable {
+
+    private static final long serialVersionUID = -6614981279398853021L;
+
+    private final List<Transaction> transactions;
+    private final Date nextTransactionOn;
+    private final Long nextId;
+
+    public TransactionPage(List<Transaction> transactions, int limit) {
+        this.transactions = transactions;
+        if(transactions.isEmpty() || transactions.size() < limit) {
+            this.nextTransactionOn = null;
+            this.nextId = null;
+        } else {
+            Transaction last = transactions.get(transactions.size() - 1);
+            this.nextTransactionOn = last.getTransactionOn();
+            this.nextId = last.getId();
+        }
+    }
+
+    public List<Transaction> getTransactions() {
+        return transactions;
+    }
+
+    public Date getNextTransactionOn() {
+        return nextTransactionOn;
+    }
+
+    public Long getNextId() {
+        return nextId;
+    }
+}
@@ -0,0 +1,138 @@
+package io.budgetapp.model.form;
+
+import javax.ws.rs.DefaultValue;
+import javax.ws.rs.QueryParam;
+import java.io.Serializable;
+
+/**
+ * How to read an uploaded bank statement, columns are zero based and only apply to csv
+ */
+public class ImportForm implements Serializable {
+
+    private static final long serialVersionUID = -2290736377263816402L;
+
+    @QueryParam("format")
+    @DefaultValue("csv")
+    private String format;
+
+    @QueryParam("budget")
+    private Long budget;
+
+    @QueryParam("dateColumn")
+    @DefaultValue("0")
+    private int dateColumn;
+
+    @QueryParam("amountColumn")
+    @DefaultValue("1")
+    private int amountColumn;
+
+    @QueryParam("remarkColumn")
+    @DefaultValue("2")
+    private int remarkColumn;
+
+    @QueryParam("budgetColumn")
+    private Integer budgetColumn;
+
+    @QueryParam("dateFormat")
+    @DefaultValue("yyyy-MM-dd")
+    private String dateFormat;
+
+    @QueryParam("header")
+    private boolean header;
+
+    @QueryParam("debitNegative")
+    @DefaultValue("true")
+    private boolean debitNegative;
+
+    public String getFormat() {
+        return format;
+    }
+
+    public void setFormat(String format) {
+        this.format = format;
+    }
+
+    /**
+     * @return budget for rows without a budget column, rows of another month go to the same budget line of that month
+     */
+    public Long getBudget() {
+        return budget;
+    }
+
+    public void setBudget(Long budget) {
+        this.budget = budget;
+    }
+
+    public int getDateColumn() {
+        return dateColumn;
+    }
+
+    public void setDateColumn(int dateColumn) {
+        this.dateColumn = dateColumn;
+    }
+
+    public int getAmountColumn() {
+        return amountColumn;
+    }
+
+    public void setAmountColumn(int amountColumn) {
+        this.amountColumn = amountColumn;
+    }
+
+    public int getRemarkColumn() {
+        return remarkColumn;
+    }
+
+    public void setRemarkColumn(int remarkColumn) {
+        this.remarkColumn = remarkColumn;
+    }
+
+    /**
+     * @return column holding the budget name, matched against the user's budgets of the row's month
+     */
+    public Integer getBudgetColumn() {
+        return budgetColumn;
+    }
+
+    public void setBudgetColumn(Integer budgetColumn) {
+        this.budgetColumn = budgetColumn;
+    }
+
+    public String getDateFormat() {
+        return dateFormat;
+    }
+
+    public void setDateFormat(String dateFormat) {
+        this.dateFormat = dateFormat;
+    }
+
+    public boolean isHeader() {
+        return header;
+    }
+
+    public void setHeader(boolean header) {
+        this.header = header;
+    }
+
+    /**
+     * @return <code>true</code> when the csv lists debits as negative amounts like ofx does, <code>false</code>
+     * when debits are positive and credits negative
+     */
+    public boolean isDebitNegative() {
+        return debitNegative;
+    }
+
+    public void setDebitNegative(boolean debitNegative) {
+        this.debitNegative = debitNegative;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("ImportForm{");
+        sb.append("format='").append(format).append('\'');
+        sb.append(", budget=").append(budget);
+        sb.append(", budgetColumn=").append(budgetColumn);
+        sb.append('}');
+        return sb.toString();
+    }
+}
@@ -1,5 +1,7 @@
 package io.budgetapp.model.form.report;
 
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
 import java.io.Serializable;
 import java.util.Date;
 
@@ -10,11 +12,16 @@ public class SearchFilter implements Serializable {
 
     private static final long serialVersionUID = 2152292419706145722L;
 
+    public static final int MAX_LIMIT = 1000;
+
     private Double maxAmount;
     private Double minAmount;
     private Date startOn;
     private Date endOn;
     private Boolean auto;
+    private Date afterTransactionOn;
+    private Long afterId;
+    private Integer limit;
 
     public Double getMaxAmount() {
         return maxAmount;
@@ -56,6 +63,42 @@ public class SearchFilter implements Serializable {
         this.auto = auto;
     }
 
+    /**
+     * keyset cursor, only transactions ordered after this transaction date and id are returned
+     */
+    public Date getAfterTransactionOn() {
+        return afterTransactionOn;
+    }
+
+    public void setAfterTransactionOn(Date afterTransactionOn) {
+        this.afterTransactionOn = afterTransactionOn;
+    }
+
+    public Long getAfterId() {
+        return afterId;
+    }
+
+    public void setAfterId(Long afterId) {
+        this.afterId = afterId;
+    }
+
+    /**
+     * page size, <code>null</code> for all matching transactions
+     */
+    @Min(value = 1, message = "{validation.limit.min}")
+    @Max(value = MAX_LIMIT, message = "{validation.limit.max}")
+    public Integer getLimit() {
+        return limit;
+    }
+
+    public void setLimit(Integer limit) {
+        this.limit = limit;
+    }
+
+    public boolean isAfter() {
+        return getAfterTransactionOn() != null && getAfterId() != null;
+    }
+
     public boolean isDateRange() {
         return getStartOn() != null && getEndOn() != null;
     }
@@ -72,6 +115,9 @@ public class SearchFilter implements Serializable {
         sb.append(", startOn=").append(startOn);
         sb.append(", endOn=").append(endOn);
         sb.append(", auto=").append(auto);
+        sb.append(", afterTransactionOn=").append(afterTransactionOn);
+        sb.append(", afterId=").append(afterId);
+        sb.append(", limit=").append(limit);
         sb.append('}');
         return sb.toString();
     }
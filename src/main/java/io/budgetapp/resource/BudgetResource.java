@@ -6,12 +6,16 @@ import io.budgetapp.model.User;
 import io.budgetapp.model.form.budget.AddBudgetForm;
 import io.budgetapp.model.form.budget.UpdateBudgetForm;
 import io.budgetapp.service.FinanceService;
+import io.budgetapp.service.SuggestionService;
 import io.dropwizard.auth.Auth;
 import io.dropwizard.hibernate.UnitOfWork;
 
 import javax.validation.Valid;
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
 import javax.ws.rs.POST;
 import javax.ws.rs.PUT;
@@ -94,9 +98,8 @@ public class BudgetResource extends AbstractResource {
     }
 
     @GET
-    @UnitOfWork
     @Path("/suggests")
-    public List<String> findSuggestion(@Auth User user, @QueryParam("q") String q) {
-        return financeService.findBudgetSuggestions(user, q);
+    public List<String> findSuggestion(@Auth User user, @QueryParam("q") String q, @QueryParam("limit") @DefaultValue("10") @Min(value = 1, message = "{validation.limit.min}") @Max(value = SuggestionService.MAX_LIMIT, message = "{validation.limit.max}") int limit) {
+        return financeService.findBudgetSuggestions(q, limit);
     }
 }
@@ -10,11 +10,13 @@ import io.dropwizard.hibernate.UnitOfWork;
 import javax.validation.Valid;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import java.util.List;
@@ -40,8 +42,8 @@ public class RecurringResource extends AbstractResource {
 
     @GET
     @UnitOfWork
-    public List<Recurring> getRecurrings(@Auth User user) {
-        return financeService.findRecurrings(user);
+    public List<Recurring> getRecurrings(@Auth User user, @QueryParam("after") @DefaultValue("0") long after, @QueryParam("limit") Integer limit) {
+        return financeService.findRecurrings(user, after, limit == null ? Integer.MAX_VALUE : limit);
     }
 
     @POST
@@ -1,17 +1,26 @@
 package io.budgetapp.resource;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import io.budgetapp.model.User;
 import io.budgetapp.model.form.report.SearchFilter;
 import io.budgetapp.service.FinanceService;
 import io.dropwizard.auth.Auth;
 import io.dropwizard.hibernate.UnitOfWork;
 
+import javax.validation.Valid;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 
 /**
  *
@@ -22,9 +31,14 @@ import javax.ws.rs.core.Response;
 public class ReportResource extends AbstractResource {
 
     private final FinanceService financeService;
+    private final ObjectMapper objectMapper;
+    private final ObjectWriter transactionWriter;
 
-    public ReportResource(FinanceService financeService) {
+    public ReportResource(FinanceService financeService, ObjectMapper objectMapper) {
         this.financeService = financeService;
+        this.objectMapper = objectMapper;
+        // flushed by the container's buffer, not once per transaction
+        this.transactionWriter = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
     }
 
     @Override
@@ -35,7 +49,36 @@ public class ReportResource extends AbstractResource {
     @POST
     @UnitOfWork
     @Path("/transactions")
-    public Response findTransactions(@Auth User user,  SearchFilter filter) {
+    public Response findTransactions(@Auth User user, @Valid SearchFilter filter, @QueryParam("stream") boolean stream) {
+        if(stream) {
+            return ok(streamTransactions(user, filter));
+        }
+        if(filter.getLimit() != null) {
+            return ok(financeService.findTransactionPage(user, filter));
+        }
         return ok(financeService.findTransactions(user, filter));
     }
+
+    /**
+     * write the matching transactions as a JSON array while they are read
+     */
+    private StreamingOutput streamTransactions(User user, SearchFilter filter) {
+        return output -> {
+            try(JsonGenerator generator = objectMapper.getFactory().createGenerator(output)) {
+                generator.writeStartArray();
+                try {
+                    financeService.scrollTransactions(user, filter, transaction -> {
+                        try {
+                            transactionWriter.writeValue(generator, transaction);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    });
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                }
+                generator.writeEndArray();
+            }
+        };
+    }
 }
@@ -1,8 +1,10 @@
 package io.budgetapp.resource;
 
+import io.budgetapp.model.ImportResult;
 import io.budgetapp.model.Point;
 import io.budgetapp.model.Transaction;
 import io.budgetapp.model.User;
+import io.budgetapp.model.form.ImportForm;
 import io.budgetapp.model.form.TransactionForm;
 import io.budgetapp.service.FinanceService;
 import io.dropwizard.auth.Auth;
@@ -11,6 +13,8 @@ import io.dropwizard.hibernate.UnitOfWork;
 import javax.ws.rs.*;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -57,6 +61,14 @@ public class TransactionResource extends AbstractResource {
                 .collect(Collectors.toList());
     }
 
+    @POST
+    @UnitOfWork
+    @Path("/import")
+    @Consumes({"text/csv", "application/x-ofx", MediaType.TEXT_PLAIN, MediaType.APPLICATION_OCTET_STREAM})
+    public ImportResult importTransactions(@Auth User user, @BeanParam ImportForm importForm, InputStream statement) throws IOException {
+        return financeService.importTransactions(user, importForm, statement);
+    }
+
     @GET
     @UnitOfWork
     @Path("/{id}")
@@ -1,5 +1,6 @@
 package io.budgetapp.resource;
 
+import io.budgetapp.auth.DefaultAuthorizer;
 import io.budgetapp.model.AccountSummary;
 import io.budgetapp.model.UsageSummary;
 import io.budgetapp.model.User;
@@ -9,18 +10,26 @@ import io.budgetapp.model.form.user.Password;
 import io.budgetapp.model.form.user.Profile;
 import io.budgetapp.service.FinanceService;
 import io.dropwizard.auth.Auth;
+import io.dropwizard.auth.CachingAuthenticator;
 import io.dropwizard.hibernate.UnitOfWork;
+import org.hibernate.validator.constraints.NotEmpty;
 
+import javax.annotation.security.RolesAllowed;
 import javax.validation.Valid;
+import javax.validation.constraints.Size;
 import javax.ws.rs.Consumes;
+import javax.ws.rs.DELETE;
 import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
 import javax.ws.rs.POST;
 import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import java.util.List;
 import java.util.Optional;
 import com.github.javafaker.Faker;
 
@@ -32,10 +41,14 @@ import com.github.javafaker.Faker;
 @Consumes(MediaType.APPLICATION_JSON)
 public class UserResource extends AbstractResource {
 
+    private static final String BEARER = "Bearer ";
+
     private final FinanceService financeService;
+    private final CachingAuthenticator<String, User> authenticator;
 
-    public UserResource(FinanceService financeService) {
+    public UserResource(FinanceService financeService, CachingAuthenticator<String, User> authenticator) {
         this.financeService = financeService;
+        this.authenticator = authenticator;
     }
 
     @Override
@@ -49,6 +62,17 @@ public class UserResource extends AbstractResource {
         User user = financeService.addUser(signUp);
         return created(user, user.getId());
     }
+
+    /**
+     * onboard many users in one request, only admins may do so
+     */
+    @POST
+    @UnitOfWork
+    @Path("/bulk")
+    @RolesAllowed(DefaultAuthorizer.ADMIN)
+    public List<User> addAll(@Auth User user, @Valid @NotEmpty @Size(max = 5000) List<SignUpForm> signUps) {
+        return financeService.addUsers(signUps);
+    }
     
     @GET
     @UnitOfWork
@@ -77,7 +101,9 @@ public class UserResource extends AbstractResource {
     @PUT
     @UnitOfWork
     public Response update(@Auth User user, Profile profile) {
-        return ok(financeService.update(user, profile));
+        User updated = financeService.update(user, profile);
+        authenticator.invalidateAll(financeService.findTokensByUser(user));
+        return ok(updated);
     }
 
     @PUT
@@ -85,6 +111,8 @@ public class UserResource extends AbstractResource {
     @Path("/password")
     public Response changePassword(@Auth User user, @Valid Password password) {
         financeService.changePassword(user, password);
+        // cached principals still carry the old password hash
+        authenticator.invalidateAll(financeService.findTokensByUser(user));
         return ok();
     }
 
@@ -111,6 +139,16 @@ public class UserResource extends AbstractResource {
         return user.map(this::ok).orElseGet(this::unauthorized);
     }
 
+    @DELETE
+    @UnitOfWork
+    @Path("/auth")
+    public Response logout(@Auth User user, @HeaderParam(HttpHeaders.AUTHORIZATION) String authorization) {
+        String token = authorization.substring(BEARER.length()).trim();
+        financeService.logout(token);
+        authenticator.invalidate(token);
+        return deleted();
+    }
+
     /**
      * return current user
      */
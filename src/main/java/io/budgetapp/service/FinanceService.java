@@ -1,6 +1,7 @@
 package io.budgetapp.service;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
 import io.budgetapp.application.DataConstraintException;
 import io.budgetapp.application.NotFoundException;
 import io.budgetapp.crypto.PasswordEncoder;
@@ -8,6 +9,7 @@ import io.budgetapp.dao.AuthTokenDAO;
 import io.budgetapp.dao.CategoryDAO;
 import io.budgetapp.dao.BudgetDAO;
 import io.budgetapp.dao.BudgetTypeDAO;
+import io.budgetapp.dao.DailyUsageDAO;
 import io.budgetapp.dao.RecurringDAO;
 import io.budgetapp.dao.TransactionDAO;
 import io.budgetapp.dao.UserDAO;
@@ -19,12 +21,16 @@ import io.budgetapp.model.BudgetType;
 import io.budgetapp.model.Category;
 import io.budgetapp.model.CategoryType;
 import io.budgetapp.model.Group;
+import io.budgetapp.model.ImportResult;
+import io.budgetapp.model.MonthlyUsage;
 import io.budgetapp.model.Point;
 import io.budgetapp.model.PointType;
 import io.budgetapp.model.Recurring;
 import io.budgetapp.model.Transaction;
+import io.budgetapp.model.TransactionPage;
 import io.budgetapp.model.UsageSummary;
 import io.budgetapp.model.User;
+import io.budgetapp.model.form.ImportForm;
 import io.budgetapp.model.form.LoginForm;
 import io.budgetapp.model.form.SignUpForm;
 import io.budgetapp.model.form.TransactionForm;
@@ -38,6 +44,8 @@ import io.budgetapp.util.Util;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.SQLIntegrityConstraintViolationException;
@@ -48,6 +56,10 @@ import java.time.Period;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 /**
@@ -57,6 +69,8 @@ public class FinanceService {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(FinanceService.class);
     private static final DateTimeFormatter SUMMARY_DATE_FORMATTER = DateTimeFormatter.ofPattern("dd MMM");
+    private static final int IMPORT_BATCH_SIZE = 1000;
+    private static final int PROVISION_BATCH_SIZE = 100;
 
     private final UserDAO userDAO;
     private final BudgetDAO budgetDAO;
@@ -67,8 +81,13 @@ public class FinanceService {
     private final AuthTokenDAO authTokenDAO;
 
     private final PasswordEncoder passwordEncoder;
+    private final SummaryCache summaryCache;
+    private final DailyUsageDAO dailyUsageDAO;
+    private final SuggestionService suggestionService;
+    private final ProvisioningPlan provisioningPlan;
+    private final ExecutorService passwordHashExecutor;
 
-    public FinanceService(UserDAO userDAO, BudgetDAO budgetDAO, BudgetTypeDAO budgetTypeDAO, CategoryDAO categoryDAO, TransactionDAO transactionDAO, RecurringDAO recurringDAO, AuthTokenDAO authTokenDAO, PasswordEncoder passwordEncoder) {
+    public FinanceService(UserDAO userDAO, BudgetDAO budgetDAO, BudgetTypeDAO budgetTypeDAO, CategoryDAO categoryDAO, TransactionDAO transactionDAO, RecurringDAO recurringDAO, AuthTokenDAO authTokenDAO, PasswordEncoder passwordEncoder, SummaryCache summaryCache, DailyUsageDAO dailyUsageDAO, SuggestionService suggestionService, ProvisioningPlan provisioningPlan, ExecutorService passwordHashExecutor) {
         this.userDAO = userDAO;
         this.budgetDAO = budgetDAO;
         this.budgetTypeDAO = budgetTypeDAO;
@@ -78,39 +97,84 @@ public class FinanceService {
         this.authTokenDAO = authTokenDAO;
 
         this.passwordEncoder = passwordEncoder;
+        this.summaryCache = summaryCache;
+        this.dailyUsageDAO = dailyUsageDAO;
+        this.suggestionService = suggestionService;
+        this.provisioningPlan = provisioningPlan;
+        this.passwordHashExecutor = passwordHashExecutor;
     }
 
     //==================================================================
     // USER
     //==================================================================
     public User addUser(SignUpForm signUp)  {
-        Optional<User> optional = userDAO.findByUsername(signUp.getUsername());
-        if(optional.isPresent()) {
-            throw new DataConstraintException("username", "Username already taken.");
-        }
-        signUp.setPassword(passwordEncoder.encode(signUp.getPassword()));
-        User user = userDAO.add(signUp);
-        LocalDate now = LocalDate.now();
+        checkUsernames(Collections.singletonList(signUp));
+        User user = newUser(signUp);
         // init account
-        initCategoriesAndBudgets(user, now.getMonthValue(), now.getYear());
-        
+        provisionUsers(Collections.singletonList(user));
         return user;
     }
     
     public User addDummyUser(SignUpForm signUp, String name) {
-        Optional<User> optional = userDAO.findByUsername(signUp.getUsername());
-        if(optional.isPresent()) {
-            throw new DataConstraintException("username", "Username already taken.");
-        }
-        signUp.setPassword(passwordEncoder.encode(signUp.getPassword()));
-        User user = userDAO.add(signUp);
+        checkUsernames(Collections.singletonList(signUp));
+        User user = newUser(signUp);
         user.setName(name);
-        LocalDate now = LocalDate.now();
         // init account
-        initCategoriesAndBudgets(user, now.getMonthValue(), now.getYear());
+        provisionUsers(Collections.singletonList(user));
+        return user;
+    }
+
+    /**
+     * sign up many users at once, each with the default categories and budgets. Nobody is added
+     * when one of the usernames is taken.
+     */
+    public List<User> addUsers(List<SignUpForm> signUps) {
+        checkUsernames(signUps);
+        // hashing dominates the cost of a signup, it gets its own threads rather than the common pool
+        List<CompletableFuture<User>> hashed = signUps
+                .stream()
+                .map(signUp -> CompletableFuture.supplyAsync(() -> newUser(signUp), passwordHashExecutor))
+                .collect(Collectors.toList());
+        List<User> users = hashed
+                .stream()
+                .map(CompletableFuture::join)
+                .collect(Collectors.toList());
+        provisionUsers(users);
+        return users;
+    }
+
+    private void checkUsernames(List<SignUpForm> signUps) {
+        Set<String> usernames = new HashSet<>(signUps.size());
+        for (SignUpForm signUp : signUps) {
+            if(!usernames.add(signUp.getUsername().toLowerCase())) {
+                throw new DataConstraintException("username", "Username already taken.");
+            }
+        }
+        List<String> taken = new ArrayList<>();
+        for (List<String> chunk : Lists.partition(new ArrayList<>(usernames), IMPORT_BATCH_SIZE)) {
+            taken.addAll(userDAO.findTakenUsernames(chunk));
+        }
+        if(!taken.isEmpty()) {
+            LOGGER.debug("Usernames already taken {}", taken);
+            throw new DataConstraintException("username", "Username already taken.");
+        }
+    }
+
+    private User newUser(SignUpForm signUp) {
+        User user = new User();
+        user.setUsername(signUp.getUsername());
+        user.setPassword(passwordEncoder.encode(signUp.getPassword()));
         return user;
     }
 
+    private void provisionUsers(List<User> users) {
+        LocalDate now = LocalDate.now();
+        for (List<User> chunk : Lists.partition(users, PROVISION_BATCH_SIZE)) {
+            userDAO.insertUsers(chunk);
+            generateDefaultCategoriesAndBudgets(chunk, now.getMonthValue(), now.getYear());
+        }
+    }
+
     public User update(User user, Profile profile) {
         user.setName(profile.getName());
         user.setCurrency(profile.getCurrency());
@@ -139,11 +203,25 @@ public class FinanceService {
         return authToken.map(AuthToken::getUser);
     }
 
+    public List<String> findTokensByUser(User user) {
+        return authTokenDAO.findByUser(user).stream()
+                .map(AuthToken::getToken)
+                .collect(Collectors.toList());
+    }
+
+    public void logout(String token) {
+        authTokenDAO.find(token).ifPresent(authTokenDAO::delete);
+    }
+
     public Optional<User> login(LoginForm login) {
         Optional<User> optionalUser = userDAO.findByUsername(login.getUsername());
         if(optionalUser.isPresent()) {
             User user = optionalUser.get();
             if(passwordEncoder.matches(login.getPassword(), user.getPassword())) {
+                if(passwordEncoder.upgradeEncoding(user.getPassword())) {
+                    user.setPassword(passwordEncoder.encode(login.getPassword()));
+                    userDAO.update(user);
+                }
                 List<AuthToken> tokens = authTokenDAO.findByUser(user);
                 if(tokens.isEmpty()) {
                     AuthToken token = authTokenDAO.add(optionalUser.get());
@@ -164,6 +242,17 @@ public class FinanceService {
 
 
     public AccountSummary findAccountSummaryByUser(User user, Integer month, Integer year) {
+        if(month == null || year == null) {
+            LocalDate now = LocalDate.now();
+            month = now.getMonthValue();
+            year = now.getYear();
+        }
+        int summaryMonth = month;
+        int summaryYear = year;
+        return summaryCache.getAccountSummary(user, month, year, () -> computeAccountSummary(user, summaryMonth, summaryYear));
+    }
+
+    private AccountSummary computeAccountSummary(User user, int month, int year) {
         List<Budget> budgets = findBudgetByUser(user, month, year);
 
         LOGGER.debug("Find account summary {} {}-{}", user, month, year);
@@ -193,7 +282,7 @@ public class FinanceService {
         // no categories, first time access
         if(categories.isEmpty()) {
             LOGGER.debug("Create default categories and budgets {} {}-{}", user, month, year);
-            generateDefaultCategoriesAndBudgets(user, month, year);
+            generateDefaultCategoriesAndBudgets(Collections.singletonList(user), month, year);
         } else {
             LOGGER.debug("Copy budgets {} {}-{}", user, month, year);
             generateBudgets(user, month, year);
@@ -207,7 +296,12 @@ public class FinanceService {
             month = now.getMonthValue();
             year = now.getYear();
         }
+        int summaryMonth = month;
+        int summaryYear = year;
+        return summaryCache.getUsageSummary(user, month, year, () -> computeUsageSummary(user, summaryMonth, summaryYear));
+    }
 
+    private UsageSummary computeUsageSummary(User user, int month, int year) {
         List<Budget> budgets = budgetDAO.findBudgets(user, month, year, true);
 
         double income =
@@ -233,24 +327,32 @@ public class FinanceService {
         return new UsageSummary(income, budget, spent);
     }
 
-    private void generateDefaultCategoriesAndBudgets(User user, int month, int year) {
-        Collection<Category> categories = categoryDAO.addDefaultCategories(user);
-        Map<String, List<Budget>> defaultBudgets = budgetDAO.findDefaultBudgets();
+    private void generateDefaultCategoriesAndBudgets(List<User> users, int month, int year) {
         Date period = Util.yearMonthDate(month, year);
-        for(Category category: categories) {
-            List<Budget> budgets = defaultBudgets.get(category.getName());
-            if(budgets != null) {
-                for(Budget budget : budgets) {
-                    BudgetType budgetType = budgetTypeDAO.addBudgetType();
-                    Budget newBudget = new Budget();
-                    newBudget.setName(budget.getName());
-                    newBudget.setPeriod(period);
-                    newBudget.setCategory(category);
-                    newBudget.setBudgetType(budgetType);
-                    budgetDAO.addBudget(user, newBudget);
+        List<Category> categories = new ArrayList<>(users.size() * provisioningPlan.getCategories().size());
+        List<Budget> budgets = new ArrayList<>(users.size() * provisioningPlan.getBudgetCount());
+        Iterator<BudgetType> budgetTypes = budgetTypeDAO.insertBudgetTypes(users.size() * provisioningPlan.getBudgetCount()).iterator();
+        for(User user : users) {
+            for(ProvisioningPlan.CategoryTemplate template : provisioningPlan.getCategories()) {
+                Category category = template.newCategory(user);
+                categories.add(category);
+                for(String name : template.getBudgetNames()) {
+                    Budget budget = new Budget();
+                    budget.setName(name);
+                    budget.setPeriod(period);
+                    budget.setUser(user);
+                    budget.setCategory(category);
+                    budget.setBudgetType(budgetTypes.next());
+                    budgets.add(budget);
                 }
             }
         }
+        // categories first, budgets refer to their ids
+        categoryDAO.insertCategories(categories);
+        budgetDAO.insertBudgets(budgets);
+
+        categories.forEach(category -> suggestionService.addCategoryName(category.getName()));
+        budgets.forEach(budget -> suggestionService.addBudgetName(budget.getName()));
     }
 
     //==================================================================
@@ -261,26 +363,34 @@ public class FinanceService {
         BudgetType budgetType = budgetTypeDAO.addBudgetType();
         Budget budget = new Budget(budgetForm);
         budget.setBudgetType(budgetType);
-        return budgetDAO.addBudget(user, budget);
+        budget = budgetDAO.addBudget(user, budget);
+        summaryCache.invalidate(user.getId(), budget.getPeriod());
+        suggestionService.addBudgetName(budget.getName());
+        return budget;
     }
 
     public Budget updateBudget(User user, UpdateBudgetForm budgetForm) {
         Budget budget = budgetDAO.findById(user, budgetForm.getId());
         Category category = categoryDAO.findById(budget.getCategory().getId());
+        if(!Objects.equals(budget.getName(), budgetForm.getName())) {
+            suggestionService.addBudgetName(budgetForm.getName());
+        }
         budget.setName(budgetForm.getName());
         budget.setProjected(budgetForm.getProjected());
         // INCOME type allow user change actual without
         // add transactions
         if(category.getType() == CategoryType.INCOME) {
-            budget.setActual(budgetForm.getActual());
+            budgetDAO.setActual(budget, budgetForm.getActual());
         }
         budgetDAO.update(budget);
+        summaryCache.invalidate(user.getId(), budget.getPeriod());
         return budget;
     }
 
     public void deleteBudget(User user, long budgetId) {
         Budget budget = budgetDAO.findById(user, budgetId);
         budgetDAO.delete(budget);
+        summaryCache.invalidate(user.getId(), budget.getPeriod());
     }
 
     public List<Budget> findBudgetsByUser(User user) {
@@ -299,9 +409,15 @@ public class FinanceService {
         List<Budget> budgets = budgetDAO.findBudgets(user, month, year, false);
 
         // no budgets, first time access
+        if(budgets.isEmpty()) {
+            // a concurrent request or the rollover may be creating them, check again holding the user's lock
+            userDAO.lockUsers(Collections.singletonList(user.getId()));
+            budgets = budgetDAO.findBudgets(user, month, year, false);
+        }
         if(budgets.isEmpty()) {
             LOGGER.debug("First time access budgets {} {}-{}", user, month, year);
             initCategoriesAndBudgets(user, month, year);
+            summaryCache.invalidate(user.getId(), Util.yearMonthDate(month, year));
             budgets = budgetDAO.findBudgets(user, month, year, false);
         }
 
@@ -316,32 +432,45 @@ public class FinanceService {
         return budgetDAO.findByUserAndCategory(user, categoryId);
     }
 
-    public List<String> findBudgetSuggestions(User user, String q) {
-        return budgetDAO.findSuggestions(user, q);
+    public List<String> findBudgetSuggestions(String q, int limit) {
+        return suggestionService.findBudgetNames(q, limit);
     }
 
     private void generateBudgets(User user, int month, int year) {
-        LocalDate now = LocalDate.now();
+        Date period = Util.yearMonthDate(month, year);
+        List<Long> userIds = Collections.singletonList(user.getId());
         // use current month's budgets
         // when user navigate backward
-        List<Budget> originalBudgets = budgetDAO.findBudgets(user, now.getMonthValue(), now.getYear(), false);
+        if(budgetDAO.copyBudgets(userIds, Util.currentYearMonth(), period) > 0) {
+            return;
+        }
         // current month budget is empty
-        if(originalBudgets.isEmpty()) {
-            // use latest budget
-            Date latestDate = budgetDAO.findLatestBudget(user);
+        // use latest budget
+        Date latestDate = budgetDAO.findLatestBudget(user);
+        if(latestDate != null) {
             LocalDate date = latestDate.toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
-            originalBudgets = budgetDAO.findBudgets(user, date.getMonthValue(), date.getYear(), false);
+            budgetDAO.copyBudgets(userIds, Util.yearMonthDate(date.getMonthValue(), date.getYear()), period);
         }
-        Date period = Util.yearMonthDate(month, year);
-        for(Budget budget : originalBudgets) {
-            Budget newBudget = new Budget();
-            newBudget.setName(budget.getName());
-            newBudget.setProjected(budget.getProjected());
-            newBudget.setPeriod(period);
-            newBudget.setCategory(budget.getCategory());
-            newBudget.setBudgetType(budget.getBudgetType());
-            budgetDAO.addBudget(user, newBudget);
+    }
+
+    /**
+     * copy the budgets of up to <code>batchSize</code> active users from one month into another,
+     * so their first request of the month finds the budgets in place
+     * @return number of users whose budgets were copied
+     */
+    public int rolloverBudgets(Date from, Date to, int batchSize) {
+        List<Long> userIds = budgetDAO.findUsersToCopy(from, to, batchSize);
+        if(userIds.isEmpty()) {
+            return 0;
+        }
+        // held until commit, a user's first request of the month waits instead of copying the same budgets
+        userDAO.lockUsers(userIds);
+        int copied = budgetDAO.copyBudgets(userIds, from, to);
+        for (Long userId : userIds) {
+            summaryCache.invalidate(userId, to);
         }
+        LOGGER.debug("Rollover {} budgets of {} users to {}", copied, userIds.size(), to);
+        return userIds.size();
     }
 
     //==================================================================
@@ -362,8 +491,8 @@ public class FinanceService {
         }
         // end validation
         Budget budget = findBudgetById(user, recurringForm.getBudgetId());
-        budget.setActual(budget.getActual() + recurringForm.getAmount());
-        budgetDAO.update(budget);
+        budgetDAO.addActuals(Collections.singletonMap(budget.getId(), recurringForm.getAmount()));
+        summaryCache.invalidate(user.getId(), budget.getPeriod());
 
         Recurring recurring = new Recurring();
         recurring.setAmount(recurringForm.getAmount());
@@ -382,36 +511,96 @@ public class FinanceService {
         transaction.setBudget(budget);
         transaction.setRecurring(recurring);
         transactionDAO.addTransaction(transaction);
+        dailyUsageDAO.add(user.getId(), Collections.singletonMap(Util.toLocalDate(transaction.getTransactionOn()), transaction.getAmount()));
 
 
         return recurring;
     }
 
     public List<Recurring> findRecurrings(User user) {
-        List<Recurring> results = recurringDAO.findRecurrings(user);
-        // TODO: fix N + 1 query but now still OK
-        results.forEach(this::populateRecurring);
+        return findRecurrings(user, 0, Integer.MAX_VALUE);
+    }
+
+    public List<Recurring> findRecurrings(User user, long afterId, int limit) {
+        List<Recurring> results = recurringDAO.findRecurrings(user, Util.currentYearMonth(), afterId, limit);
         LOGGER.debug("Found recurrings {}", results);
         return results;
     }
 
     public void updateRecurrings() {
+        updateRecurrings(1000, () -> true);
+    }
+
+    /**
+     * run the due recurrings page by page, each page loads its budgets with one query, applies the
+     * budget increments with grouped updates, inserts its transactions in one batch and is committed
+     * @param batchSize recurrings per page
+     * @param renew called before every page, the run stops when it returns <code>false</code>
+     * @return number of recurrings run
+     */
+    public int updateRecurrings(int batchSize, BooleanSupplier renew) {
         LOGGER.debug("Begin update recurrings...");
-        List<Recurring> recurrings = recurringDAO.findActiveRecurrings();
-        LOGGER.debug("Found {} recurring(s) item to update", recurrings.size());
+        Date now = new Date();
+        int processed = 0;
+        long afterId = 0;
+        List<Recurring> recurrings;
+        do {
+            if(!renew.getAsBoolean()) {
+                LOGGER.warn("Stop update recurrings after {} recurring(s), lease lost", processed);
+                break;
+            }
+            recurrings = recurringDAO.findActiveRecurrings(now, afterId, batchSize);
+            if(recurrings.isEmpty()) {
+                break;
+            }
+            LOGGER.debug("Found {} recurring(s) item to update", recurrings.size());
+            afterId = recurrings.get(recurrings.size() - 1).getId();
+            processed += updateRecurrings(recurrings);
+            recurringDAO.commit();
+        } while(recurrings.size() == batchSize);
+        LOGGER.debug("Finish update recurrings...");
+        return processed;
+    }
+
+    public long countDueRecurrings() {
+        return recurringDAO.countActiveRecurrings(new Date());
+    }
+
+    private int updateRecurrings(List<Recurring> recurrings) {
+        Set<Long> budgetTypeIds = recurrings
+                .stream()
+                .map(recurring -> recurring.getBudgetType().getId())
+                .collect(Collectors.toSet());
+        Map<Long, Budget> budgets = budgetDAO.findByBudgetTypes(budgetTypeIds)
+                .stream()
+                .collect(Collectors.toMap(budget -> budget.getBudgetType().getId(), budget -> budget, (first, second) -> first));
+
+        Date now = new Date();
+        List<Recurring> due = new ArrayList<>(recurrings.size());
         for (Recurring recurring : recurrings) {
+            if(budgets.containsKey(recurring.getBudgetType().getId())) {
+                due.add(recurring);
+            } else {
+                LOGGER.warn("No budget in current period for recurring {}", recurring.getId());
+            }
+        }
+        // claim before writing anything, a recurring run by a concurrent job is skipped here
+        Set<Long> claimed = recurringDAO.updateLastRunAt(due, now);
+
+        Map<Long, Double> increments = new HashMap<>();
+        Map<Long, Double> usages = new HashMap<>();
+        List<Transaction> transactions = new ArrayList<>(claimed.size());
+        for (Recurring recurring : due) {
+            if(!claimed.contains(recurring.getId())) {
+                continue;
+            }
 
             // budget
-            Budget budget = budgetDAO.findByBudgetType(recurring.getBudgetType().getId());
-            budget.setActual(budget.getActual() + recurring.getAmount());
-            budgetDAO.update(budget);
+            Budget budget = budgets.get(recurring.getBudgetType().getId());
+            increments.merge(budget.getId(), recurring.getAmount(), Double::sum);
+            usages.merge(budget.getUser().getId(), recurring.getAmount(), Double::sum);
             // end budget
 
-            // recurring
-            recurring.setLastRunAt(new Date());
-            recurringDAO.update(recurring);
-            // end recurring
-
             // transaction
             Transaction transaction = new Transaction();
             transaction.setName(budget.getName());
@@ -420,17 +609,19 @@ public class FinanceService {
             transaction.setRemark(recurring.getRecurringTypeDisplay() + " recurring for " + budget.getName());
             transaction.setAuto(true);
             transaction.setBudget(budget);
-            transaction.setTransactionOn(new Date());
-            transactionDAO.addTransaction(transaction);
+            transaction.setTransactionOn(now);
+            transactions.add(transaction);
             // end transaction
 
         }
-        LOGGER.debug("Finish update recurrings...");
-    }
-
-    private void populateRecurring(Recurring recurring) {
-        Budget budget = budgetDAO.findByBudgetType(recurring.getBudgetType().getId());
-        recurring.setName(budget.getName());
+        budgetDAO.addActuals(increments);
+        budgets.values().stream()
+                .filter(budget -> increments.containsKey(budget.getId()))
+                .forEach(budget -> summaryCache.invalidate(budget.getUser().getId(), budget.getPeriod()));
+        transactionDAO.insertTransactions(transactions);
+        LocalDate today = Util.toLocalDate(now);
+        usages.forEach((userId, amount) -> dailyUsageDAO.add(userId, Collections.singletonMap(today, amount)));
+        return claimed.size();
     }
 
     public void deleteRecurring(User user, long recurringId) {
@@ -465,6 +656,9 @@ public class FinanceService {
         }
 
         List<Transaction> transactions = new ArrayList<>();
+        List<Recurring> recurrings = new ArrayList<>();
+        Map<Long, Double> increments = new HashMap<>();
+        Map<LocalDate, Double> usages = new HashMap<>();
 
         // validation
         for (TransactionForm transactionForm : transactionForms) {
@@ -488,19 +682,7 @@ public class FinanceService {
             }
             // end validation
 
-            budget.setActual(budget.getActual() + transactionForm.getAmount());
-            budgetDAO.update(budget);
-
-            Recurring recurring = new Recurring();
-            if (Boolean.TRUE.equals(transactionForm.getRecurring())) {
-                LOGGER.debug("Add recurring {} by {}", transactionForm, user);
-                recurring.setAmount(transactionForm.getAmount());
-                recurring.setRecurringType(transactionForm.getRecurringType());
-                recurring.setBudgetType(budget.getBudgetType());
-                recurring.setRemark(transactionForm.getRemark());
-                recurring.setLastRunAt(transactionForm.getTransactionOn());
-                recurringDAO.addRecurring(recurring);
-            }
+            increments.merge(budget.getId(), transactionForm.getAmount(), Double::sum);
 
             Transaction transaction = new Transaction();
             transaction.setName(budget.getName());
@@ -509,14 +691,122 @@ public class FinanceService {
             transaction.setAuto(Boolean.TRUE.equals(transactionForm.getRecurring()));
             transaction.setTransactionOn(transactionForm.getTransactionOn());
             transaction.setBudget(transactionForm.getBudget());
+
             if (Boolean.TRUE.equals(transactionForm.getRecurring())) {
+                LOGGER.debug("Add recurring {} by {}", transactionForm, user);
+                Recurring recurring = new Recurring();
+                recurring.setAmount(transactionForm.getAmount());
+                recurring.setRecurringType(transactionForm.getRecurringType());
+                recurring.setBudgetType(budget.getBudgetType());
+                recurring.setRemark(transactionForm.getRemark());
+                recurring.setLastRunAt(transactionForm.getTransactionOn());
+                recurrings.add(recurring);
                 transaction.setRecurring(recurring);
             }
 
             transactions.add(transaction);
+            usages.merge(Util.toLocalDate(transaction.getTransactionOn()), transaction.getAmount(), Double::sum);
+        }
+
+        // one atomic increment per budget, concurrent batches add up instead of overwriting each other
+        budgetDAO.addActuals(increments);
+        budgetMap.values().stream()
+                .filter(budget -> increments.containsKey(budget.getId()))
+                .forEach(budget -> summaryCache.invalidate(user.getId(), budget.getPeriod()));
+        recurringDAO.insertRecurrings(recurrings);
+        transactionDAO.insertTransactions(transactions);
+        dailyUsageDAO.add(user.getId(), usages);
+        return transactions;
+    }
+
+    /**
+     * import a bank statement while it is read, rows are checked against the user's budgets loaded
+     * once per month and inserted in JDBC batches, the budget actuals are updated once per budget at the end
+     */
+    public ImportResult importTransactions(User user, ImportForm importForm, InputStream statement) throws IOException {
+        LOGGER.debug("Import transactions {} by {}", importForm, user);
+        Budget defaultBudget = importForm.getBudget() == null ? null : budgetDAO.findById(user, importForm.getBudget());
+        if(defaultBudget == null && importForm.getBudgetColumn() == null) {
+            throw new DataConstraintException("budget", "Budget is required");
         }
 
-        return transactionDAO.addTransactions(transactions);
+        Map<Date, List<Budget>> budgetsByPeriod = new HashMap<>();
+        Map<Long, Budget> imported = new HashMap<>();
+        Map<Long, Double> increments = new HashMap<>();
+        Map<LocalDate, Double> usages = new HashMap<>();
+        List<Transaction> transactions = new ArrayList<>(IMPORT_BATCH_SIZE);
+        ImportResult result = new ImportResult();
+
+        try(StatementReader reader = StatementReader.open(importForm, statement)) {
+            StatementReader.Row row;
+            while((row = reader.next()) != null) {
+                result.addRow();
+                if(row.getError() != null) {
+                    result.addError(row.getNumber(), row.getError());
+                    continue;
+                }
+                if(row.getAmount() == 0) {
+                    result.addError(row.getNumber(), "Amount is required");
+                    continue;
+                }
+                Budget budget = findImportBudget(user, budgetsByPeriod, defaultBudget, row);
+                if(budget == null) {
+                    result.addError(row.getNumber(), "No budget " + (row.getBudget() == null ? "" : row.getBudget() + " ") + "in " + row.getTransactionOn().getMonth() + " " + row.getTransactionOn().getYear());
+                    continue;
+                }
+
+                Transaction transaction = new Transaction();
+                transaction.setName(budget.getName());
+                transaction.setAmount(row.getAmount());
+                transaction.setRemark(row.getRemark());
+                transaction.setAuto(false);
+                transaction.setTransactionOn(Util.toDate(row.getTransactionOn()));
+                transaction.setBudget(budget);
+                transactions.add(transaction);
+
+                imported.put(budget.getId(), budget);
+                increments.merge(budget.getId(), row.getAmount(), Double::sum);
+                usages.merge(row.getTransactionOn(), row.getAmount(), Double::sum);
+
+                if(transactions.size() == IMPORT_BATCH_SIZE) {
+                    insertImported(transactions, result);
+                }
+            }
+        }
+        insertImported(transactions, result);
+
+        budgetDAO.addActuals(increments);
+        dailyUsageDAO.add(user.getId(), usages);
+        imported.values().forEach(budget -> summaryCache.invalidate(user.getId(), budget.getPeriod()));
+        LOGGER.debug("Imported {} of {} row(s) by {}", result.getImported(), result.getRows(), user);
+        return result;
+    }
+
+    private void insertImported(List<Transaction> transactions, ImportResult result) {
+        transactionDAO.insertTransactions(transactions);
+        result.addImported(transactions.size());
+        LOGGER.debug("Imported {} row(s) so far", result.getImported());
+        transactions.clear();
+    }
+
+    /**
+     * budget named by the row, or the default budget's line in the row's month
+     */
+    private Budget findImportBudget(User user, Map<Date, List<Budget>> budgetsByPeriod, Budget defaultBudget, StatementReader.Row row) {
+        LocalDate transactionOn = row.getTransactionOn();
+        Date period = Util.yearMonthDate(transactionOn.getMonthValue(), transactionOn.getYear());
+        List<Budget> budgets = budgetsByPeriod.computeIfAbsent(period,
+                key -> budgetDAO.findBudgets(user, transactionOn.getMonthValue(), transactionOn.getYear(), true));
+        for (Budget budget : budgets) {
+            if(row.getBudget() != null) {
+                if(row.getBudget().equalsIgnoreCase(budget.getName())) {
+                    return budget;
+                }
+            } else if(defaultBudget != null && Objects.equals(defaultBudget.getBudgetType().getId(), budget.getBudgetType().getId())) {
+                return budget;
+            }
+        }
+        return null;
     }
 
     public boolean deleteTransaction(User user, long transactionId) {
@@ -525,8 +815,10 @@ public class FinanceService {
         if(optional.isPresent()) {
             Transaction transaction = optional.get();
             Budget budget = transaction.getBudget();
-            budget.setActual(budget.getActual() - transaction.getAmount());
+            budgetDAO.addActuals(Collections.singletonMap(budget.getId(), -transaction.getAmount()));
             transactionDAO.delete(transaction);
+            dailyUsageDAO.add(user.getId(), Collections.singletonMap(Util.toLocalDate(transaction.getTransactionOn()), -transaction.getAmount()));
+            summaryCache.invalidate(user.getId(), budget.getPeriod());
             return true;
         }
         return false;
@@ -551,6 +843,15 @@ public class FinanceService {
         return transactionDAO.findTransactions(user, filter);
     }
 
+    public TransactionPage findTransactionPage(User user, SearchFilter filter) {
+        return new TransactionPage(findTransactions(user, filter), filter.getLimit());
+    }
+
+    public void scrollTransactions(User user, SearchFilter filter, Consumer<Transaction> consumer) {
+        LOGGER.debug("Stream transactions with {}", filter);
+        transactionDAO.scrollTransactions(user, filter, 500, consumer);
+    }
+
     public List<Transaction> findTransactionsByRecurring(User user, long recurringId) {
         return transactionDAO.findByRecurring(user, recurringId);
     }
@@ -587,36 +888,14 @@ public class FinanceService {
             begin = begin.minusDays(7 - ending.getDayOfMonth());
         }
 
-        Instant instantStart = begin.atStartOfDay().atZone(ZoneId.systemDefault()).toInstant();
-        Date start = Date.from(instantStart);
-
-        Instant instantEnd = ending.atStartOfDay().atZone(ZoneId.systemDefault()).toInstant();
-        Date end = Date.from(instantEnd);
-
-
-        List<Transaction> transactions = transactionDAO.findByRange(user, start, end);
-
-        Map<Date, List<Transaction>> groups = transactions
-                .stream()
-                .collect(Collectors.groupingBy(Transaction::getTransactionOn, TreeMap::new, Collectors.toList()));
+        Map<LocalDate, Double> totals = dailyUsageDAO.findByRange(user, begin, ending);
 
         int days = Period.between(begin, ending).getDays() + 1;
 
         for (int i = 0; i < days; i++) {
             LocalDate day = begin.plusDays(i);
             Instant instantDay = day.atStartOfDay().atZone(ZoneId.systemDefault()).toInstant();
-            Date dayDate = Date.from(instantDay);
-            groups.putIfAbsent(dayDate, Collections.emptyList());
-        }
-
-        for (Map.Entry<Date, List<Transaction>> entry : groups.entrySet()) {
-            double total = entry.getValue()
-                    .stream()
-                    .mapToDouble(Transaction::getAmount)
-                    .sum();
-
-            LocalDate res = Util.toLocalDate(entry.getKey());
-            Point point = new Point(SUMMARY_DATE_FORMATTER.format(res), entry.getKey().getTime(), total, PointType.TRANSACTIONS);
+            Point point = new Point(SUMMARY_DATE_FORMATTER.format(day), instantDay.toEpochMilli(), totals.getOrDefault(day, 0.0), PointType.TRANSACTIONS);
             points.add(point);
         }
         return points;
@@ -635,7 +914,9 @@ public class FinanceService {
     }
 
     public Category addCategory(User user, Category category) {
-        return categoryDAO.addCategory(user, category);
+        Category newCategory = categoryDAO.addCategory(user, category);
+        suggestionService.addCategoryName(newCategory.getName());
+        return newCategory;
     }
 
     public Category findCategoryById(long categoryId) {
@@ -650,20 +931,10 @@ public class FinanceService {
             year = now.getYear();
         }
 
-        List<Point> points = new ArrayList<>();
-        List<Budget> budgets = budgetDAO.findBudgets(user, month, year, true);
-        Map<Category, List<Budget>> groups = budgets
+        List<Point> points = budgetDAO.findUsageByCategory(user, month, year, CategoryType.EXPENDITURE)
                 .stream()
-                .filter(b -> b.getCategory().getType() == CategoryType.EXPENDITURE)
-                .collect(Collectors.groupingBy(Budget::getCategory));
-        for (Map.Entry<Category, List<Budget>> entry : groups.entrySet()) {
-            double total = entry.getValue()
-                    .stream()
-                    .mapToDouble(Budget::getActual)
-                    .sum();
-            Point point = new Point(entry.getKey().getName(), entry.getKey().getId(), total, PointType.CATEGORY);
-            points.add(point);
-        }
+                .map(usage -> new Point(usage.getName(), usage.getCategoryId(), usage.getActual(), PointType.CATEGORY))
+                .collect(Collectors.toList());
 
         points.sort((p1, p2) -> Double.compare(p2.getValue(), p1.getValue()));
         return points;
@@ -673,48 +944,25 @@ public class FinanceService {
         List<Point> points = new ArrayList<>();
         LocalDate end = LocalDate.now();
         LocalDate start = end.minusMonths(6);
-        List<Budget> budgets = budgetDAO.findByRange(user, start.getMonthValue(), start.getYear(), end.getMonthValue(), end.getYear());
-
-        // group by period
-        Map<Date, List<Budget>> groups = budgets
-                .stream()
-                .collect(Collectors.groupingBy(Budget::getPeriod, TreeMap::new, Collectors.toList()));
+        Map<LocalDate, MonthlyUsage> months = new TreeMap<>();
+        for (MonthlyUsage usage : budgetDAO.findMonthlyUsage(user, start.getMonthValue(), start.getYear(), end.getMonthValue(), end.getYear())) {
+            months.put(Util.toLocalDate(usage.getPeriod()), usage);
+        }
 
         LocalDate now = LocalDate.now();
         // populate empty months, if any
         for (int i = 0; i < 6; i++) {
             LocalDate day = now.minusMonths(i).withDayOfMonth(1);
-            groups.putIfAbsent(Util.toDate(day), Collections.emptyList());
+            months.putIfAbsent(day, new MonthlyUsage(Util.toDate(day), 0, 0, 0));
         }
 
         // generate points
-        for (Map.Entry<Date, List<Budget>> entry : groups.entrySet()) {
-            // budget
-            double budget = entry.getValue()
-                    .stream()
-                    .filter(b -> b.getCategory().getType() == CategoryType.EXPENDITURE)
-                    .mapToDouble(Budget::getProjected)
-                    .sum();
-
-            // spending
-            double spending = entry.getValue()
-                    .stream()
-                    .filter(b -> b.getActual() > 0)
-                    .filter(b -> b.getCategory().getType() == CategoryType.EXPENDITURE)
-                    .mapToDouble(Budget::getActual)
-                    .sum();
-
-            // refund
-            double refund = entry.getValue()
-                    .stream()
-                    .filter(b -> b.getActual() < 0)
-                    .mapToDouble(Budget::getActual)
-                    .sum();
-
-            String month = Util.toFriendlyMonthDisplay(entry.getKey());
-            Point spendingPoint = new Point(month, entry.getKey().getTime(), spending, PointType.MONTHLY_SPEND);
-            Point refundPoint = new Point(month, entry.getKey().getTime(), refund, PointType.MONTHLY_REFUND);
-            Point budgetPoint = new Point(month, entry.getKey().getTime(), budget, PointType.MONTHLY_BUDGET);
+        for (MonthlyUsage usage : months.values()) {
+            Date period = usage.getPeriod();
+            String month = Util.toFriendlyMonthDisplay(period);
+            Point spendingPoint = new Point(month, period.getTime(), usage.getSpending(), PointType.MONTHLY_SPEND);
+            Point refundPoint = new Point(month, period.getTime(), usage.getRefund(), PointType.MONTHLY_REFUND);
+            Point budgetPoint = new Point(month, period.getTime(), usage.getBudget(), PointType.MONTHLY_BUDGET);
 
             points.add(spendingPoint);
             points.add(refundPoint);
@@ -726,10 +974,11 @@ public class FinanceService {
     public void deleteCategory(User user, long categoryId) {
         Category category = categoryDAO.find(user, categoryId);
         categoryDAO.delete(category);
+        summaryCache.invalidateAll(user);
     }
 
-    public List<String> findCategorySuggestions(User user, String q) {
-        return categoryDAO.findSuggestions(user, q);
+    public List<String> findCategorySuggestions(String q, int limit) {
+        return suggestionService.findCategoryNames(q, limit);
     }
 
     //==================================================================
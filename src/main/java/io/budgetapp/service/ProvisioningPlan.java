@@ -0,0 +1,80 @@
+package io.budgetapp.service;
+
+import io.budgetapp.model.Budget;
+import io.budgetapp.model.Category;
+import io.budgetapp.model.CategoryType;
+import io.budgetapp.model.User;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Default categories and budgets of a new user, compiled once from the configuration so signing
+ * up does not walk the configuration again
+ */
+public class ProvisioningPlan {
+
+    private final List<CategoryTemplate> categories;
+    private final int budgetCount;
+
+    public ProvisioningPlan(List<Category> categories, Map<String, List<Budget>> budgets) {
+        List<CategoryTemplate> templates = new ArrayList<>(categories.size());
+        int count = 0;
+        for (Category category : categories) {
+            List<String> budgetNames = new ArrayList<>();
+            for (Budget budget : budgets.getOrDefault(category.getName(), Collections.emptyList())) {
+                budgetNames.add(budget.getName());
+            }
+            templates.add(new CategoryTemplate(category.getName(), category.getType(), budgetNames));
+            count += budgetNames.size();
+        }
+        this.categories = Collections.unmodifiableList(templates);
+        this.budgetCount = count;
+    }
+
+    public List<CategoryTemplate> getCategories() {
+        return categories;
+    }
+
+    /**
+     * @return number of budgets created for one user
+     */
+    public int getBudgetCount() {
+        return budgetCount;
+    }
+
+    public static class CategoryTemplate {
+
+        private final String name;
+        private final CategoryType type;
+        private final List<String> budgetNames;
+
+        private CategoryTemplate(String name, CategoryType type, List<String> budgetNames) {
+            this.name = name;
+            this.type = type;
+            this.budgetNames = Collections.unmodifiableList(budgetNames);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public CategoryType getType() {
+            return type;
+        }
+
+        public List<String> getBudgetNames() {
+            return budgetNames;
+        }
+
+        public Category newCategory(User user) {
+            Category category = new Category();
+            category.setName(name);
+            category.setType(type);
+            category.setUser(user);
+            return category;
+        }
+    }
+}
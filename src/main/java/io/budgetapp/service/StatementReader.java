@@ -0,0 +1,309 @@
+package io.budgetapp.service;
+
+import io.budgetapp.application.DataConstraintException;
+import io.budgetapp.model.form.ImportForm;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads a bank statement one row at a time so an import never holds the whole file in memory.
+ * Rows that cannot be parsed are still returned, carrying the error instead of the values.
+ * Amounts are returned the way transactions store them, debits positive and credits negative.
+ */
+public abstract class StatementReader implements Closeable {
+
+    private static final DateTimeFormatter OFX_DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    protected final BufferedReader reader;
+
+    private StatementReader(InputStream statement) {
+        this.reader = new BufferedReader(new InputStreamReader(statement, StandardCharsets.UTF_8));
+    }
+
+    public static StatementReader open(ImportForm importForm, InputStream statement) {
+        if("csv".equalsIgnoreCase(importForm.getFormat())) {
+            DateTimeFormatter dateFormatter;
+            try {
+                dateFormatter = DateTimeFormatter.ofPattern(importForm.getDateFormat());
+            } catch (IllegalArgumentException e) {
+                throw new DataConstraintException("dateFormat", "Invalid date format " + importForm.getDateFormat());
+            }
+            return new Csv(statement, importForm, dateFormatter);
+        }
+        if("ofx".equalsIgnoreCase(importForm.getFormat())) {
+            return new Ofx(statement);
+        }
+        throw new DataConstraintException("format", "Format must be csv or ofx");
+    }
+
+    /**
+     * @return next row or <code>null</code> at the end of the statement
+     */
+    public abstract Row next() throws IOException;
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    public static class Row {
+
+        private final int number;
+        private LocalDate transactionOn;
+        private double amount;
+        private String remark;
+        private String budget;
+        private String error;
+
+        private Row(int number) {
+            this.number = number;
+        }
+
+        /**
+         * @return 1 based line of a csv, or position of the transaction in an ofx statement
+         */
+        public int getNumber() {
+            return number;
+        }
+
+        public LocalDate getTransactionOn() {
+            return transactionOn;
+        }
+
+        public double getAmount() {
+            return amount;
+        }
+
+        public String getRemark() {
+            return remark;
+        }
+
+        /**
+         * @return budget name of the row, <code>null</code> when the statement has none
+         */
+        public String getBudget() {
+            return budget;
+        }
+
+        public String getError() {
+            return error;
+        }
+
+        private Row fail(String error) {
+            this.error = error;
+            return this;
+        }
+    }
+
+    /**
+     * @param debitNegative whether the statement writes debits as negative amounts
+     * @return the amount with debits positive and credits negative, a credit such as a refund lowers the budget
+     * @throws NumberFormatException when the value is not a finite number, parseDouble takes NaN and Infinity
+     */
+    private static double parseAmount(String value, boolean debitNegative) {
+        // bank exports use thousands separators
+        double amount = Double.parseDouble(value.replace(",", "").replace(" ", ""));
+        if(Double.isNaN(amount) || Double.isInfinite(amount)) {
+            throw new NumberFormatException(value);
+        }
+        return debitNegative ? -amount : amount;
+    }
+
+    /**
+     * one row per line, fields may be quoted with <code>"</code> and quotes escaped by doubling them
+     */
+    private static class Csv extends StatementReader {
+
+        private final ImportForm importForm;
+        private final DateTimeFormatter dateFormatter;
+        private int line;
+
+        private Csv(InputStream statement, ImportForm importForm, DateTimeFormatter dateFormatter) {
+            super(statement);
+            this.importForm = importForm;
+            this.dateFormatter = dateFormatter;
+        }
+
+        @Override
+        public Row next() throws IOException {
+            String text;
+            do {
+                text = reader.readLine();
+                line++;
+                if(text == null) {
+                    return null;
+                }
+            } while(text.trim().isEmpty() || (line == 1 && importForm.isHeader()));
+
+            Row row = new Row(line);
+            List<String> fields = split(text);
+            String date = field(fields, importForm.getDateColumn());
+            String amount = field(fields, importForm.getAmountColumn());
+            if(date == null || amount == null) {
+                return row.fail("Missing date or amount column");
+            }
+            try {
+                row.transactionOn = LocalDate.parse(date, dateFormatter);
+            } catch (DateTimeParseException e) {
+                return row.fail("Invalid date " + date);
+            }
+            try {
+                row.amount = parseAmount(amount, importForm.isDebitNegative());
+            } catch (NumberFormatException e) {
+                return row.fail("Invalid amount " + amount);
+            }
+            row.remark = field(fields, importForm.getRemarkColumn());
+            if(importForm.getBudgetColumn() != null) {
+                row.budget = field(fields, importForm.getBudgetColumn());
+            }
+            return row;
+        }
+
+        private static String field(List<String> fields, int column) {
+            if(column < 0 || column >= fields.size()) {
+                return null;
+            }
+            String value = fields.get(column).trim();
+            return value.isEmpty() ? null : value;
+        }
+
+        private static List<String> split(String text) {
+            List<String> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if(quoted) {
+                    if(c == '"' && i + 1 < text.length() && text.charAt(i + 1) == '"') {
+                        field.append('"');
+                        i++;
+                    } else if(c == '"') {
+                        quoted = false;
+                    } else {
+                        field.append(c);
+                    }
+                } else if(c == '"') {
+                    quoted = true;
+                } else if(c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else {
+                    field.append(c);
+                }
+            }
+            fields.add(field.toString());
+            return fields;
+        }
+    }
+
+    /**
+     * <code>STMTTRN</code> aggregates of an OFX statement, both the SGML (unclosed elements) and the
+     * XML flavour. The date comes from <code>DTPOSTED</code>, the remark from <code>NAME</code> or
+     * <code>MEMO</code>.
+     */
+    private static class Ofx extends StatementReader {
+
+        private int count;
+
+        private Ofx(InputStream statement) {
+            super(statement);
+        }
+
+        @Override
+        public Row next() throws IOException {
+            Row row = null;
+            String date = null;
+            String amount = null;
+            String name = null;
+            String memo = null;
+            String tag;
+            while((tag = nextTag()) != null) {
+                if("STMTTRN".equals(tag)) {
+                    row = new Row(++count);
+                    date = amount = name = memo = null;
+                } else if(row == null) {
+                    continue;
+                } else if("/STMTTRN".equals(tag)) {
+                    return toRow(row, date, amount, name != null ? name : memo);
+                } else if("DTPOSTED".equals(tag)) {
+                    date = value();
+                } else if("TRNAMT".equals(tag)) {
+                    amount = value();
+                } else if("NAME".equals(tag)) {
+                    name = value();
+                } else if("MEMO".equals(tag)) {
+                    memo = value();
+                }
+            }
+            return row == null ? null : toRow(row, date, amount, name != null ? name : memo);
+        }
+
+        private static Row toRow(Row row, String date, String amount, String remark) {
+            if(date == null || date.length() < 8 || amount == null) {
+                return row.fail("Missing DTPOSTED or TRNAMT");
+            }
+            try {
+                row.transactionOn = LocalDate.parse(date.substring(0, 8), OFX_DATE_FORMATTER);
+            } catch (DateTimeParseException e) {
+                return row.fail("Invalid date " + date);
+            }
+            try {
+                // TRNAMT is negative for money leaving the account
+                row.amount = parseAmount(amount, true);
+            } catch (NumberFormatException e) {
+                return row.fail("Invalid amount " + amount);
+            }
+            row.remark = remark;
+            return row;
+        }
+
+        /**
+         * @return name of the next element, closing elements keep their <code>/</code>
+         */
+        private String nextTag() throws IOException {
+            int c;
+            while((c = reader.read()) != -1 && c != '<') {
+                // skip text between elements
+            }
+            if(c == -1) {
+                return null;
+            }
+            StringBuilder tag = new StringBuilder();
+            while((c = reader.read()) != -1 && c != '>') {
+                tag.append((char) c);
+            }
+            return tag.toString().trim().toUpperCase();
+        }
+
+        /**
+         * @return text up to the next element, the next <code>&lt;</code> is left unread
+         */
+        private String value() throws IOException {
+            StringBuilder value = new StringBuilder();
+            reader.mark(1);
+            int c;
+            while((c = reader.read()) != -1 && c != '<') {
+                value.append((char) c);
+                reader.mark(1);
+            }
+            if(c == '<') {
+                reader.reset();
+            }
+            String text = value.toString().trim()
+                    .replace("&lt;", "<")
+                    .replace("&gt;", ">")
+                    .replace("&amp;", "&");
+            return text.isEmpty() ? null : text;
+        }
+    }
+}
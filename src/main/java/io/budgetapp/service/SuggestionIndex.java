@@ -0,0 +1,155 @@
+package io.budgetapp.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Distinct names, compared case insensitive, weighted by popularity. Queries of one or two
+ * characters match the start of any word of a name, longer queries match anywhere in the name
+ * through a trigram index. Names starting with the query rank first, then the most popular.
+ */
+public class SuggestionIndex {
+
+    private static final int GRAM = 3;
+
+    private static final Comparator<Match> RANK = Comparator
+            .comparing((Match match) -> match.prefix)
+            .thenComparingLong(match -> match.popularity)
+            .thenComparing(Comparator.comparing((Match match) -> match.entry.key).reversed());
+
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final ConcurrentNavigableMap<String, Set<Entry>> words = new ConcurrentSkipListMap<>();
+    private final ConcurrentMap<String, Set<Entry>> grams = new ConcurrentHashMap<>();
+
+    public void add(String name) {
+        add(name, 1);
+    }
+
+    /**
+     * @param popularity added to the popularity of the name, a new name starts at 0
+     */
+    public void add(String name, long popularity) {
+        if(name == null) {
+            return;
+        }
+        String key = normalize(name);
+        if(key.isEmpty()) {
+            return;
+        }
+        Entry entry = entries.computeIfAbsent(key, k -> index(new Entry(name.trim(), k)));
+        entry.popularity.addAndGet(popularity);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return at most <code>limit</code> names matching the query, best first
+     */
+    public List<String> find(String q, int limit) {
+        String query = q == null ? "" : normalize(q);
+        if(limit <= 0) {
+            return Collections.emptyList();
+        }
+
+        // keep the best matches in a heap with the worst on top
+        PriorityQueue<Match> top = new PriorityQueue<>(Math.min(limit, entries.size()) + 1, RANK);
+        for (Entry entry : candidates(query)) {
+            if(query.length() >= GRAM && !entry.key.contains(query)) {
+                continue;
+            }
+            Match match = new Match(entry, entry.key.startsWith(query));
+            if(top.size() < limit) {
+                top.add(match);
+            } else if(RANK.compare(match, top.peek()) > 0) {
+                top.poll();
+                top.add(match);
+            }
+        }
+
+        List<String> names = new ArrayList<>(top.size());
+        while(!top.isEmpty()) {
+            names.add(top.poll().entry.name);
+        }
+        Collections.reverse(names);
+        return names;
+    }
+
+    private Collection<Entry> candidates(String query) {
+        if(query.isEmpty()) {
+            return entries.values();
+        }
+        if(query.length() < GRAM) {
+            Set<Entry> matches = new HashSet<>();
+            words.subMap(query, query + Character.MAX_VALUE).values().forEach(matches::addAll);
+            return matches;
+        }
+        // the rarest trigram of the query bounds the candidates, the rest is checked with contains
+        Set<Entry> smallest = null;
+        for (int i = 0; i + GRAM <= query.length(); i++) {
+            Set<Entry> gram = grams.get(query.substring(i, i + GRAM));
+            if(gram == null) {
+                return Collections.emptyList();
+            }
+            if(smallest == null || gram.size() < smallest.size()) {
+                smallest = gram;
+            }
+        }
+        return smallest;
+    }
+
+    private Entry index(Entry entry) {
+        for (String word : entry.key.split("\\s+")) {
+            words.computeIfAbsent(word, k -> ConcurrentHashMap.newKeySet()).add(entry);
+        }
+        for (int i = 0; i + GRAM <= entry.key.length(); i++) {
+            grams.computeIfAbsent(entry.key.substring(i, i + GRAM), k -> ConcurrentHashMap.newKeySet()).add(entry);
+        }
+        return entry;
+    }
+
+    private static String normalize(String name) {
+        return name.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    private static final class Entry {
+
+        private final String name;
+        private final String key;
+        private final AtomicLong popularity = new AtomicLong();
+
+        private Entry(String name, String key) {
+            this.name = name;
+            this.key = key;
+        }
+    }
+
+    /**
+     * an entry ranked against one query, popularity is read once so the heap order stays stable
+     */
+    private static final class Match {
+
+        private final Entry entry;
+        private final boolean prefix;
+        private final long popularity;
+
+        private Match(Entry entry, boolean prefix) {
+            this.entry = entry;
+            this.prefix = prefix;
+            this.popularity = entry.popularity.get();
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package io.budgetapp.service;
+
+import io.budgetapp.dao.BudgetDAO;
+import io.budgetapp.dao.CategoryDAO;
+import io.dropwizard.hibernate.UnitOfWork;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+
+/**
+ * Budget and category name suggestions served from memory. The indexes are loaded once at startup
+ * with the number of users having each name, names added afterwards count once per add.
+ */
+public class SuggestionService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SuggestionService.class);
+
+    public static final int MAX_LIMIT = 100;
+
+    private final BudgetDAO budgetDAO;
+    private final CategoryDAO categoryDAO;
+    private final SuggestionIndex budgetNames = new SuggestionIndex();
+    private final SuggestionIndex categoryNames = new SuggestionIndex();
+
+    public SuggestionService(BudgetDAO budgetDAO, CategoryDAO categoryDAO) {
+        this.budgetDAO = budgetDAO;
+        this.categoryDAO = categoryDAO;
+    }
+
+    @UnitOfWork
+    public void load() {
+        budgetDAO.countUsersByName().forEach(budgetNames::add);
+        categoryDAO.countUsersByName().forEach(categoryNames::add);
+        LOGGER.info("Loaded {} budget and {} category name suggestions", budgetNames.size(), categoryNames.size());
+    }
+
+    public void addBudgetName(String name) {
+        budgetNames.add(name);
+    }
+
+    public void addCategoryName(String name) {
+        categoryNames.add(name);
+    }
+
+    public List<String> findBudgetNames(String q, int limit) {
+        return budgetNames.find(q, limit);
+    }
+
+    public List<String> findCategoryNames(String q, int limit) {
+        return categoryNames.find(q, limit);
+    }
+}
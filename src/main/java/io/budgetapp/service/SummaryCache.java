@@ -0,0 +1,155 @@
+package io.budgetapp.service;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheBuilderSpec;
+import io.budgetapp.model.AccountSummary;
+import io.budgetapp.model.UsageSummary;
+import io.budgetapp.model.User;
+import io.budgetapp.util.Util;
+import org.hibernate.SessionFactory;
+import org.hibernate.context.internal.ManagedSessionContext;
+
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import java.time.LocalDate;
+import java.util.Date;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * Computed {@link AccountSummary} and {@link UsageSummary} per user and month. Writes to a month's
+ * budgets invalidate its entries right away and again once the transaction completes, so a read
+ * racing the write cannot keep a summary of uncommitted data. Every invalidation also bumps the
+ * user's generation, a summary loaded while the generation changed is not kept.
+ */
+public class SummaryCache {
+
+    private static final int GENERATION_STRIPES = 1024;
+
+    private final SessionFactory sessionFactory;
+    // per user, users sharing a stripe only cost each other a cache put
+    private final AtomicLongArray generations = new AtomicLongArray(GENERATION_STRIPES);
+    private final Cache<Key, AccountSummary> accountSummaries;
+    private final Cache<Key, UsageSummary> usageSummaries;
+
+    public SummaryCache(SessionFactory sessionFactory, CacheBuilderSpec spec, MetricRegistry metrics) {
+        this.sessionFactory = sessionFactory;
+        this.accountSummaries = CacheBuilder.from(spec).recordStats().build();
+        this.usageSummaries = CacheBuilder.from(spec).recordStats().build();
+        register(metrics, "account", accountSummaries);
+        register(metrics, "usage", usageSummaries);
+    }
+
+    public AccountSummary getAccountSummary(User user, int month, int year, Supplier<AccountSummary> loader) {
+        return get(accountSummaries, new Key(user.getId(), year, month), loader);
+    }
+
+    public UsageSummary getUsageSummary(User user, int month, int year, Supplier<UsageSummary> loader) {
+        return get(usageSummaries, new Key(user.getId(), year, month), loader);
+    }
+
+    /**
+     * drop the summaries of the month the given budget period falls in
+     */
+    public void invalidate(Long userId, Date period) {
+        LocalDate date = Util.toLocalDate(period);
+        Key key = new Key(userId, date.getYear(), date.getMonthValue());
+        Runnable invalidate = () -> {
+            generations.incrementAndGet(stripe(userId));
+            accountSummaries.invalidate(key);
+            usageSummaries.invalidate(key);
+        };
+        invalidate.run();
+        afterCompletion(invalidate);
+    }
+
+    /**
+     * drop every month of the user, for writes spanning periods such as deleting a category
+     */
+    public void invalidateAll(User user) {
+        Long userId = user.getId();
+        Runnable invalidate = () -> {
+            generations.incrementAndGet(stripe(userId));
+            accountSummaries.asMap().keySet().removeIf(key -> key.userId.equals(userId));
+            usageSummaries.asMap().keySet().removeIf(key -> key.userId.equals(userId));
+        };
+        invalidate.run();
+        afterCompletion(invalidate);
+    }
+
+    private <T> T get(Cache<Key, T> cache, Key key, Supplier<T> loader) {
+        T value = cache.getIfPresent(key);
+        if(value == null) {
+            int stripe = stripe(key.userId);
+            long generation = generations.get(stripe);
+            value = loader.get();
+            cache.put(key, value);
+            // invalidations bump the generation before dropping entries, a stale put is either caught here or dropped there
+            if(generations.get(stripe) != generation) {
+                cache.invalidate(key);
+            }
+        }
+        return value;
+    }
+
+    private static int stripe(Long userId) {
+        return (userId.hashCode() & Integer.MAX_VALUE) % GENERATION_STRIPES;
+    }
+
+    private void afterCompletion(Runnable invalidate) {
+        if(!ManagedSessionContext.hasBind(sessionFactory)) {
+            return;
+        }
+        sessionFactory.getCurrentSession().getTransaction().registerSynchronization(new Synchronization() {
+            @Override
+            public void beforeCompletion() {
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if(status == Status.STATUS_COMMITTED) {
+                    invalidate.run();
+                }
+            }
+        });
+    }
+
+    private static void register(MetricRegistry metrics, String cache, Cache<?, ?> summaries) {
+        metrics.register(name(SummaryCache.class, cache, "hits"), (Gauge<Long>) () -> summaries.stats().hitCount());
+        metrics.register(name(SummaryCache.class, cache, "misses"), (Gauge<Long>) () -> summaries.stats().missCount());
+        metrics.register(name(SummaryCache.class, cache, "hit-rate"), (Gauge<Double>) () -> summaries.stats().hitRate());
+        metrics.register(name(SummaryCache.class, cache, "size"), (Gauge<Long>) summaries::size);
+    }
+
+    private static final class Key {
+
+        private final Long userId;
+        private final int year;
+        private final int month;
+
+        private Key(Long userId, int year, int month) {
+            this.userId = userId;
+            this.year = year;
+            this.month = month;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return year == key.year && month == key.month && Objects.equals(userId, key.userId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(userId, year, month);
+        }
+    }
+}
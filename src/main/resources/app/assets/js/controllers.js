@@ -1045,12 +1045,16 @@ financeControllers.controller('NotFoundController', function ($scope) {
 });
 
 
-financeControllers.controller('LogoutController', function ($scope, $rootScope, $location, $window, AuthenticationService, auth) {
+financeControllers.controller('LogoutController', function ($scope, $rootScope, $location, $window, $http, AuthenticationService, auth) {
 
   auth.clearCredentials();
   $location.url("/");
 
   $scope.logout = function() {
+    if($window.sessionStorage.token) {
+      // revoke on the server, header is captured now since the token is removed below
+      $http.delete('/api/users/auth', {headers: {Authorization: 'Bearer ' + $window.sessionStorage.token}});
+    }
     auth.clearCredentials();
     AuthenticationService.isLogged = false;
     delete $window.sessionStorage.token;
@@ -0,0 +1,38 @@
+package io.budgetapp.crypto;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PasswordEncoderTest {
+
+    private final PasswordEncoder passwordEncoder = new PasswordEncoder("secret", 1000);
+
+    @Test
+    public void testEncodeAndMatches() {
+        String encoded = passwordEncoder.encode("password");
+        assertTrue(encoded.startsWith("pbkdf2$1000$"));
+        assertTrue(passwordEncoder.matches("password", encoded));
+        assertFalse(passwordEncoder.matches("Password", encoded));
+        assertFalse(passwordEncoder.upgradeEncoding(encoded));
+    }
+
+    @Test
+    public void testLegacyHashMatchesAndUpgrades() {
+        byte[] salt = new SaltGenerator().generateKey();
+        byte[] digest = new Digester("SHA-256", 1024).digest(PasswordEncoder.concatenate(salt, Utf8.encode("secret"), Utf8.encode("password")));
+        String legacy = new String(Hex.encode(PasswordEncoder.concatenate(salt, digest)));
+
+        assertTrue(passwordEncoder.matches("password", legacy));
+        assertFalse(passwordEncoder.matches("wrong", legacy));
+        assertTrue(passwordEncoder.upgradeEncoding(legacy));
+    }
+
+    @Test
+    public void testUpgradeWhenCostRaised() {
+        String encoded = passwordEncoder.encode("password");
+        PasswordEncoder stronger = new PasswordEncoder("secret", 2000);
+        assertTrue(stronger.matches("password", encoded));
+        assertTrue(stronger.upgradeEncoding(encoded));
+    }
+}
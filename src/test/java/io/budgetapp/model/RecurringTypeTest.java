@@ -0,0 +1,27 @@
+package io.budgetapp.model;
+
+import io.budgetapp.util.Util;
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.util.Date;
+
+import static org.junit.Assert.*;
+
+public class RecurringTypeTest {
+
+    @Test
+    public void testNextRunAt() {
+        Date lastRunAt = Util.toDate(LocalDate.of(2014, 1, 31));
+        assertEquals(Util.toDate(LocalDate.of(2014, 2, 1)), RecurringType.DAILY.nextRunAt(lastRunAt));
+        assertEquals(Util.toDate(LocalDate.of(2014, 2, 7)), RecurringType.WEEKLY.nextRunAt(lastRunAt));
+        assertEquals(Util.toDate(LocalDate.of(2014, 2, 28)), RecurringType.MONTHLY.nextRunAt(lastRunAt));
+        assertEquals(Util.toDate(LocalDate.of(2015, 1, 31)), RecurringType.YEARLY.nextRunAt(lastRunAt));
+    }
+
+    @Test
+    public void testNextRunAtStartOfDay() {
+        Date lastRunAt = new Date(Util.toDate(LocalDate.of(2014, 8, 19)).getTime() + 15 * 60 * 60 * 1000);
+        assertEquals(Util.toDate(LocalDate.of(2014, 8, 20)), RecurringType.DAILY.nextRunAt(lastRunAt));
+    }
+}
@@ -29,6 +29,7 @@ public class FinanceServiceTest {
 	int testYear = 2012;
 	long testId = 1;
 	String testString = "q";
+	int testLimit = 10;
 	
 	//Mock Instances
 	User mockUser = mock(User.class);
@@ -70,9 +71,9 @@ public class FinanceServiceTest {
 	@Test
 	public void testFindSuggestion() {
 		List<String> value;
-		when(mockService.findBudgetSuggestions(mockUser, testString)).thenReturn(testListString);
-		value = budget.findSuggestion(mockUser, testString);
-		verify(mockService).findBudgetSuggestions(mockUser, testString);
+		when(mockService.findBudgetSuggestions(testString, testLimit)).thenReturn(testListString);
+		value = budget.findSuggestion(mockUser, testString, testLimit);
+		verify(mockService).findBudgetSuggestions(testString, testLimit);
 		Assert.assertEquals(testListString, value);
 	}
 	
@@ -0,0 +1,122 @@
+package io.budgetapp.service;
+
+import io.budgetapp.model.form.ImportForm;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+import static org.junit.Assert.*;
+
+public class StatementReaderTest {
+
+    @Test
+    public void testCsvQuotedFields() throws IOException {
+        StatementReader reader = open(csv(), "2017-01-05,\"-1,234.50\",\"Coffee, \"\"large\"\"\"\n");
+
+        StatementReader.Row row = reader.next();
+        assertNull(row.getError());
+        assertEquals(LocalDate.of(2017, 1, 5), row.getTransactionOn());
+        assertEquals(1234.50, row.getAmount(), 0.001);
+        assertEquals("Coffee, \"large\"", row.getRemark());
+        assertNull(reader.next());
+    }
+
+    @Test
+    public void testCsvHeaderAndBlankLinesSkipped() throws IOException {
+        ImportForm importForm = csv();
+        importForm.setHeader(true);
+        StatementReader reader = open(importForm, "date,amount,remark\n\n2017-01-05,-10,Lunch\n");
+
+        StatementReader.Row row = reader.next();
+        assertEquals(3, row.getNumber());
+        assertEquals("Lunch", row.getRemark());
+        assertNull(reader.next());
+    }
+
+    @Test
+    public void testCsvAmountSign() throws IOException {
+        StatementReader reader = open(csv(), "2017-01-05,-10,Lunch\n2017-01-06,25,Refund\n");
+        assertEquals(10, reader.next().getAmount(), 0.001);
+        assertEquals(-25, reader.next().getAmount(), 0.001);
+
+        ImportForm debitPositive = csv();
+        debitPositive.setDebitNegative(false);
+        reader = open(debitPositive, "2017-01-05,10,Lunch\n2017-01-06,-25,Refund\n");
+        assertEquals(10, reader.next().getAmount(), 0.001);
+        assertEquals(-25, reader.next().getAmount(), 0.001);
+    }
+
+    @Test
+    public void testCsvInvalidRow() throws IOException {
+        StatementReader reader = open(csv(), "05/01/2017,-10,Lunch\n2017-01-06,abc,Dinner\n2017-01-06,NaN,Dinner\n2017-01-06,-Infinity,Dinner\n2017-01-06,1e400,Dinner\n2017-01-07\n");
+        assertEquals("Invalid date 05/01/2017", reader.next().getError());
+        assertEquals("Invalid amount abc", reader.next().getError());
+        assertEquals("Invalid amount NaN", reader.next().getError());
+        assertEquals("Invalid amount -Infinity", reader.next().getError());
+        assertEquals("Invalid amount 1e400", reader.next().getError());
+        assertEquals("Missing date or amount column", reader.next().getError());
+        assertNull(reader.next());
+    }
+
+    @Test
+    public void testOfxSgml() throws IOException {
+        StatementReader reader = open(ofx(),
+                "OFXHEADER:100\nDATA:OFXSGML\n\n<OFX><BANKMSGSRSV1><STMTTRNRS><STMTRS><BANKTRANLIST>\n" +
+                "<STMTTRN>\n<TRNTYPE>DEBIT\n<DTPOSTED>20170105120000[-5:EST]\n<TRNAMT>-12.50\n<NAME>Coffee &amp; cake\n<MEMO>Card 1234\n</STMTTRN>\n" +
+                "<STMTTRN>\n<TRNTYPE>CREDIT\n<DTPOSTED>20170106\n<TRNAMT>100.00\n<MEMO>Salary\n</STMTTRN>\n" +
+                "</BANKTRANLIST></STMTRS></STMTTRNRS></BANKMSGSRSV1></OFX>\n");
+
+        StatementReader.Row debit = reader.next();
+        assertEquals(1, debit.getNumber());
+        assertEquals(LocalDate.of(2017, 1, 5), debit.getTransactionOn());
+        assertEquals(12.50, debit.getAmount(), 0.001);
+        assertEquals("Coffee & cake", debit.getRemark());
+
+        StatementReader.Row credit = reader.next();
+        assertEquals(2, credit.getNumber());
+        assertEquals(-100, credit.getAmount(), 0.001);
+        assertEquals("Salary", credit.getRemark());
+        assertNull(reader.next());
+    }
+
+    @Test
+    public void testOfxXml() throws IOException {
+        StatementReader reader = open(ofx(),
+                "<?xml version=\"1.0\"?><OFX><BANKTRANLIST>" +
+                "<STMTTRN><TRNTYPE>DEBIT</TRNTYPE><DTPOSTED>20170105</DTPOSTED><TRNAMT>-7.25</TRNAMT><NAME>Bus</NAME></STMTTRN>" +
+                "<STMTTRN><DTPOSTED>2017</DTPOSTED><TRNAMT>-1</TRNAMT></STMTTRN>" +
+                "</BANKTRANLIST></OFX>");
+
+        StatementReader.Row row = reader.next();
+        assertNull(row.getError());
+        assertEquals(LocalDate.of(2017, 1, 5), row.getTransactionOn());
+        assertEquals(7.25, row.getAmount(), 0.001);
+        assertEquals("Bus", row.getRemark());
+        assertEquals("Missing DTPOSTED or TRNAMT", reader.next().getError());
+        assertNull(reader.next());
+    }
+
+    private static ImportForm csv() {
+        ImportForm importForm = new ImportForm();
+        importForm.setFormat("csv");
+        importForm.setDateColumn(0);
+        importForm.setAmountColumn(1);
+        importForm.setRemarkColumn(2);
+        importForm.setDateFormat("yyyy-MM-dd");
+        importForm.setDebitNegative(true);
+        return importForm;
+    }
+
+    private static ImportForm ofx() {
+        ImportForm importForm = new ImportForm();
+        importForm.setFormat("ofx");
+        return importForm;
+    }
+
+    private static StatementReader open(ImportForm importForm, String statement) {
+        return StatementReader.open(importForm, new ByteArrayInputStream(statement.getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -0,0 +1,84 @@
+package io.budgetapp.service;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class SuggestionIndexTest {
+
+    @Test
+    public void testDistinctIgnoringCase() {
+        SuggestionIndex index = new SuggestionIndex();
+        index.add("Coffee");
+        index.add("  coffee ");
+        index.add("COFFEE");
+        index.add(" ");
+        index.add(null);
+
+        assertEquals(1, index.size());
+        assertEquals(Collections.singletonList("Coffee"), index.find("cof", 10));
+    }
+
+    @Test
+    public void testShortQueryMatchesWordPrefix() {
+        SuggestionIndex index = index("Coffee", "Hot cocoa", "Taco", "Car");
+
+        assertEquals(Arrays.asList("Coffee", "Hot cocoa"), index.find("co", 10));
+        assertEquals(Arrays.asList("Car", "Coffee", "Hot cocoa"), index.find("c", 10));
+        assertEquals(Collections.emptyList(), index.find("ac", 10));
+    }
+
+    @Test
+    public void testLongQueryMatchesAnywhere() {
+        SuggestionIndex index = index("Coffee", "Iced coffee", "Cafe", "Toffee", "Stamp tattoo");
+
+        assertEquals(Arrays.asList("Coffee", "Iced coffee"), index.find("coffe", 10));
+        assertEquals(Arrays.asList("Coffee", "Iced coffee", "Toffee"), index.find("ffe", 10));
+        // both trigrams of the query are in "stamp tattoo", the query itself is not
+        assertEquals(Collections.emptyList(), index.find("stat", 10));
+        assertEquals(Collections.singletonList("Stamp tattoo"), index.find("tatt", 10));
+        assertEquals(Collections.emptyList(), index.find("xyz", 10));
+    }
+
+    @Test
+    public void testRanking() {
+        SuggestionIndex index = new SuggestionIndex();
+        index.add("Iced coffee", 100);
+        index.add("Coffee beans", 1);
+        index.add("Coffee", 5);
+        index.add("Cold coffee", 5);
+        index.add("Black coffee", 5);
+
+        // prefix first, then popularity, then name
+        assertEquals(Arrays.asList("Coffee", "Coffee beans", "Iced coffee", "Black coffee", "Cold coffee"),
+                index.find("coffee", 10));
+
+        index.add("Coffee beans", 10);
+        assertEquals(Arrays.asList("Coffee beans", "Coffee", "Iced coffee", "Black coffee", "Cold coffee"),
+                index.find("coffee", 10));
+    }
+
+    @Test
+    public void testLimitKeepsBest() {
+        SuggestionIndex index = new SuggestionIndex();
+        for (int i = 0; i < 100; i++) {
+            index.add(String.format("Item %02d", i), i);
+        }
+
+        assertEquals(Arrays.asList("Item 99", "Item 98", "Item 97"), index.find("item", 3));
+        assertEquals(Collections.singletonList("Item 99"), index.find("item", 1));
+        assertEquals(Collections.emptyList(), index.find("item", 0));
+        assertEquals(100, index.find("", 1000).size());
+    }
+
+    private static SuggestionIndex index(String... names) {
+        SuggestionIndex index = new SuggestionIndex();
+        for (String name : names) {
+            index.add(name);
+        }
+        return index;
+    }
+}